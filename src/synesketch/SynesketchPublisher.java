@@ -0,0 +1,377 @@
+package synesketch;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Fans a stream of {@link SynesketchState} updates out to any number of
+ * {@link Flow.Subscriber subscribers}, e.g. a sketch, a metrics sink and a
+ * persistence writer.
+ * <p>
+ * Every subscription has a bounded buffer and is served by its own drain task
+ * on an executor, honouring the demand of its subscriber. When a buffer is
+ * full, the {@link OverflowPolicy} of the subscription decides whether the
+ * oldest or the newest update is dropped, or whether publishing blocks until
+ * there is space again. With the dropping policies a slow subscriber neither
+ * stalls the publisher nor the other subscribers.
+ * <p>
+ * A subscriber whose <code>onNext</code> throws is cancelled and receives the
+ * exception through <code>onError</code>; the others are not affected.
+ * Instances are thread-safe.
+ */
+public class SynesketchPublisher implements Flow.Publisher<SynesketchState>,
+  UpdateHandler, AutoCloseable
+{
+  /**
+   * What happens to an update for a subscription whose buffer is full.
+   */
+  public enum OverflowPolicy
+  {
+    /** The oldest buffered update is dropped. */
+    DROP_OLDEST,
+
+    /** The new update is dropped. */
+    DROP_NEWEST,
+
+    /**
+     * Publishing waits until the subscriber has taken an update. This stalls
+     * the publisher and thereby all subscribers, so it is only meant for
+     * subscribers which must not miss any update.
+     */
+    BLOCK
+  }
+
+
+  private final CopyOnWriteArrayList<Subscription> subscriptions =
+    new CopyOnWriteArrayList<Subscription>();
+
+  private final Executor executor;
+
+  private final int defaultBufferSize;
+
+  private final OverflowPolicy defaultPolicy;
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private volatile boolean closed = false;
+
+
+  /**
+   * Class constructor for a publisher which serves its subscribers on the
+   * common {@link ForkJoinPool}, with buffers of
+   * {@link Flow#defaultBufferSize()} updates which drop the oldest update on
+   * overflow.
+   */
+  public SynesketchPublisher()
+  {
+    this(ForkJoinPool.commonPool(), Flow.defaultBufferSize(), OverflowPolicy.DROP_OLDEST);
+  }
+
+  /**
+   * Class constructor.
+   *
+   * @param executor  the executor to serve the subscribers on
+   * @param bufferSize  the buffer size of subscriptions made through
+   *   {@link #subscribe(Flow.Subscriber)}
+   * @param policy  the overflow policy of subscriptions made through
+   *   {@link #subscribe(Flow.Subscriber)}
+   */
+  public SynesketchPublisher( Executor executor, int bufferSize,
+    OverflowPolicy policy )
+  {
+    if (bufferSize <= 0)
+      throw new IllegalArgumentException("Buffer size must be positive");
+    this.executor = executor;
+    this.defaultBufferSize = bufferSize;
+    this.defaultPolicy = policy;
+  }
+
+
+  @Override
+  public void subscribe( Flow.Subscriber<? super SynesketchState> subscriber )
+  {
+    subscribe(subscriber, defaultBufferSize, defaultPolicy);
+  }
+
+  /**
+   * Adds a subscriber with its own buffer size and overflow policy.
+   *
+   * @param subscriber  the subscriber
+   * @param bufferSize  the maximum number of buffered updates
+   * @param policy  the overflow policy
+   */
+  public void subscribe( Flow.Subscriber<? super SynesketchState> subscriber,
+    int bufferSize, OverflowPolicy policy )
+  {
+    if (bufferSize <= 0)
+      throw new IllegalArgumentException("Buffer size must be positive");
+    Subscription subscription = new Subscription(subscriber, bufferSize, policy);
+    subscriber.onSubscribe(subscription);
+    if (closed) {
+      subscription.complete();
+    } else {
+      subscriptions.add(subscription);
+      // a concurrent close may have missed the new subscription
+      if (closed)
+        subscription.complete();
+    }
+  }
+
+  /**
+   * Adds an {@link UpdateHandler} as a subscriber with unbounded demand. An
+   * exception thrown by the handler is printed, and the handler still
+   * receives the later updates.
+   *
+   * @param handler  the handler
+   * @param bufferSize  the maximum number of buffered updates
+   * @param policy  the overflow policy
+   */
+  public void subscribe( final UpdateHandler handler, int bufferSize,
+    OverflowPolicy policy )
+  {
+    subscribe(new Flow.Subscriber<SynesketchState>() {
+      @Override
+      public void onSubscribe( Flow.Subscription subscription )
+      {
+        subscription.request(Long.MAX_VALUE);
+      }
+
+      @Override
+      public void onNext( SynesketchState state )
+      {
+        try {
+          handler.synesketchUpdate(state);
+        } catch (Exception ex) {
+          ex.printStackTrace();
+        }
+      }
+
+      @Override
+      public void onError( Throwable ex )
+      {
+        ex.printStackTrace();
+      }
+
+      @Override
+      public void onComplete() { }
+    }, bufferSize, policy);
+  }
+
+
+  /**
+   * Publishes an update to all current subscribers. Updates published after
+   * {@link #close()} are ignored, so that a publisher may be closed while
+   * another thread publishes.
+   *
+   * @param state  the update
+   * @throws InterruptedException  if the thread was interrupted while
+   *   waiting for a subscriber with the {@link OverflowPolicy#BLOCK} policy
+   */
+  @Override
+  public void synesketchUpdate( SynesketchState state ) throws InterruptedException
+  {
+    if (state == null)
+      throw new NullPointerException();
+    if (closed)
+      return;
+    for (Subscription subscription : subscriptions)
+      subscription.offer(state);
+  }
+
+  /**
+   * Completes all subscriptions once their buffered updates have been
+   * delivered. Later updates are ignored.
+   */
+  @Override
+  public void close()
+  {
+    closed = true;
+    for (Subscription subscription : subscriptions)
+      subscription.complete();
+  }
+
+
+  /**
+   * Returns whether {@link #close()} has been called.
+   *
+   * @return  <code>true</code> if closed
+   */
+  public boolean isClosed()
+  {
+    return closed;
+  }
+
+  /**
+   * Returns the number of current subscribers.
+   *
+   * @return  the number of subscribers
+   */
+  public int getSubscriberCount()
+  {
+    return subscriptions.size();
+  }
+
+  /**
+   * Returns the number of updates dropped so far because the buffer of a
+   * subscriber was full, counting each subscriber separately.
+   *
+   * @return  the number of dropped updates
+   */
+  public long getDroppedCount()
+  {
+    return dropped.get();
+  }
+
+
+  private final class Subscription implements Flow.Subscription, Runnable
+  {
+    private final Flow.Subscriber<? super SynesketchState> subscriber;
+
+    private final ArrayDeque<SynesketchState> buffer;
+
+    private final int bufferSize;
+
+    private final OverflowPolicy policy;
+
+    private long demand = 0;
+
+    private boolean cancelled = false, completing = false, scheduled = false;
+
+    private Throwable error;
+
+
+    Subscription( Flow.Subscriber<? super SynesketchState> subscriber,
+      int bufferSize, OverflowPolicy policy )
+    {
+      this.subscriber = subscriber;
+      this.bufferSize = bufferSize;
+      this.policy = policy;
+      buffer = new ArrayDeque<SynesketchState>(Math.min(bufferSize, 16));
+    }
+
+
+    synchronized void offer( SynesketchState state ) throws InterruptedException
+    {
+      if (cancelled || completing)
+        return;
+      if (buffer.size() >= bufferSize) {
+        switch (policy) {
+        case DROP_OLDEST:
+          buffer.poll();
+          dropped.incrementAndGet();
+          break;
+        case DROP_NEWEST:
+          dropped.incrementAndGet();
+          return;
+        case BLOCK:
+          while (buffer.size() >= bufferSize && !cancelled)
+            wait();
+          if (cancelled)
+            return;
+          break;
+        }
+      }
+      buffer.add(state);
+      schedule();
+    }
+
+    synchronized void complete()
+    {
+      completing = true;
+      schedule();
+    }
+
+    @Override
+    public synchronized void request( long n )
+    {
+      if (cancelled)
+        return;
+      if (n <= 0) {
+        error = new IllegalArgumentException("Non-positive request: " + n);
+        buffer.clear();
+        completing = true;
+      } else {
+        demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel()
+    {
+      synchronized (this) {
+        cancelled = true;
+        buffer.clear();
+        notifyAll();
+      }
+      subscriptions.remove(this);
+    }
+
+    /** Starts a drain task unless one is running. */
+    private void schedule()
+    {
+      if (!scheduled && !cancelled &&
+        ((demand > 0 && !buffer.isEmpty()) || (completing && buffer.isEmpty()) ||
+          error != null))
+      {
+        scheduled = true;
+        try {
+          executor.execute(this);
+        } catch (RejectedExecutionException ex) {
+          scheduled = false;
+          throw ex;
+        }
+      }
+    }
+
+    /** Delivers buffered updates as long as there is demand. */
+    @Override
+    public void run()
+    {
+      for (;;) {
+        SynesketchState state;
+        Throwable error;
+        synchronized (this) {
+          error = this.error;
+          state = null;
+          if (cancelled) {
+            scheduled = false;
+            return;
+          } else if (error == null && demand > 0 && !buffer.isEmpty()) {
+            state = buffer.poll();
+            demand--;
+            notifyAll();
+          } else if (error == null && !(completing && buffer.isEmpty())) {
+            scheduled = false;
+            return;
+          } else {
+            cancelled = true;
+            scheduled = false;
+          }
+        }
+
+        if (state == null) {
+          subscriptions.remove(this);
+          if (error != null)
+            subscriber.onError(error);
+          else
+            subscriber.onComplete();
+          return;
+        }
+        try {
+          subscriber.onNext(state);
+        } catch (Throwable ex) {
+          cancel();
+          subscriber.onError(ex);
+          return;
+        }
+      }
+    }
+  }
+}
@@ -19,9 +19,24 @@
 
 package synesketch;
 
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import processing.core.PApplet;
 
@@ -38,33 +53,88 @@
  * {@link #synesthetise(String)} method and implement the synesthesia
  * algorithm, the concrete way text is interpreted and transferred into visual
  * output.
+ * <p>
+ * Instances which analyse texts with {@link #synesthetiseAsync(String)} own a
+ * worker thread, which {@link #close()} stops.
  * 
  * @author Uros Krcadinac email: uros@krcadinac.com
  * @version 1.0
  */
-public abstract class Synesthetiator
+public abstract class Synesthetiator implements AutoCloseable
 {
 
-	private UpdateHandler updateHandler;
+	/** The time after which an idle worker thread stops, in seconds. */
+	private static final long WORKER_KEEP_ALIVE = 60;
+
+	private ExecutorService worker;
+
+	private boolean closed = false;
+
+	private volatile SynesketchPublisher publisher;
+
+  /**
+   * Binds the <code>synesketchUpdate</code> method of an object once, so that
+   * updates aren't dispatched through reflection where possible.
+   *
+   * @param handler  the object to notify
+   * @return  an {@link UpdateHandler} which calls the method of the object
+   */
+  static UpdateHandler bindUpdateHandler( Object handler )
+    throws NoSuchMethodException, IllegalAccessException
+  {
+    Class<?> handlerClass = handler.getClass();
+    Method method = handlerClass.getMethod("synesketchUpdate", SynesketchState.class);
+    int mod = method.getModifiers();
+    if (!Modifier.isPublic(mod) || Modifier.isStatic(mod)) {
+      throw new IllegalAccessException(
+        handlerClass.getName() + '#' + method.getName() +
+          '(' + method.getParameterTypes()[0].getName() + ')' +
+          " must be public and non-static");
+    }
+
+    // a generated implementation calls the method directly, but needs to
+    // see its class; other applets are notified through reflection
+    if (Modifier.isPublic(handlerClass.getModifiers()) && isVisible(handlerClass)) {
+      try {
+        MethodHandle target = MethodHandles.publicLookup().unreflect(method);
+        MethodType updateType = MethodType.methodType(void.class, SynesketchState.class);
+        return (UpdateHandler) LambdaMetafactory.metafactory(
+          MethodHandles.lookup(), "synesketchUpdate",
+          MethodType.methodType(UpdateHandler.class, handlerClass),
+          updateType, target, updateType)
+          .getTarget().invoke(handler);
+      } catch (IllegalAccessException | LambdaConversionException ex) {
+        // fall through
+      } catch (Throwable ex) {
+        throw new Error(ex);
+      }
+    }
+    return new ReflectiveUpdateHandler(handler, method);
+  }
+
+  private static boolean isVisible( Class<?> c )
+  {
+    try {
+      return Class.forName(c.getName(), false, Synesthetiator.class.getClassLoader()) == c;
+    } catch (ClassNotFoundException ex) {
+      return false;
+    }
+  }
 
+  /**
+   * Calls the <code>synesketchUpdate</code> method of an object through
+   * reflection.
+   */
   private static class ReflectiveUpdateHandler implements UpdateHandler
   {
     private final Object handlerInstance;
 
     private final Method handlerMethod;
 
-    public ReflectiveUpdateHandler( Object handler )
-      throws NoSuchMethodException, IllegalAccessException
+    public ReflectiveUpdateHandler( Object handler, Method handlerMethod )
     {
       handlerInstance = handler;
-      handlerMethod = handler.getClass().getMethod("synesketchUpdate", SynesketchState.class);
-      int mod = handlerMethod.getModifiers();
-      if (!Modifier.isPublic(mod) || Modifier.isStatic(mod)) {
-        throw new IllegalAccessException(
-          handler.getClass().getName() + '#' + handlerMethod.getName() +
-            '(' + handlerMethod.getParameterTypes()[0].getName() + ')' +
-            " must be public and non-static");
-      }
+      this.handlerMethod = handlerMethod;
     }
 
     @Override
@@ -104,32 +174,60 @@ public Synesthetiator()
 	public Synesthetiator(PApplet parent)
     throws NoSuchMethodException, IllegalAccessException
   {
-		this((parent != null) ? new ReflectiveUpdateHandler(parent) : null);
+		this((parent != null) ? bindUpdateHandler(parent) : null);
 	}
 
+	/**
+	 * Class constructor that sets the handler to be notified about some text
+	 * event. The handler subscribes to the {@link #getPublisher() publisher}
+	 * of this instance, without missing any update; an exception it throws is
+	 * printed and doesn't stop later updates.
+	 *
+	 * @param handler
+	 *            an {@link UpdateHandler} or <code>null</code>
+	 */
 	public Synesthetiator(UpdateHandler handler) {
-		this.updateHandler = handler;
+		if (handler != null) {
+			getPublisher().subscribe(handler, Flow.defaultBufferSize(),
+				SynesketchPublisher.OverflowPolicy.BLOCK);
+		}
 	}
 
 	/**
 	 * Notifies the parent Processing applet (PApplet) about some text event, by
-	 * calling the applet’s method <code>synesketchUpdate</code>.
+	 * calling the applet’s method <code>synesketchUpdate</code>. Like all
+	 * subscribers of the publisher, the applet is called on a thread of the
+	 * publisher's executor, in the order of the updates.
 	 *
 	 * @param state
 	 *            a SynesketchState object, which contains the data
 	 *            synesthetically interpreted from the text
 	 */
 	public void notifyPApplet(SynesketchState state) {
-		if (updateHandler != null) {
+		SynesketchPublisher publisher = this.publisher;
+		if (publisher != null) {
 			try {
-				updateHandler.synesketchUpdate(state);
-			} catch (Exception e) {
-				e.printStackTrace();
-				updateHandler = null;
+				publisher.synesketchUpdate(state);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 			}
 		}
 	}
 
+	/**
+	 * Returns the publisher of all states this instance notifies about, to
+	 * which any number of subscribers can subscribe in addition to the
+	 * update handler. It is created on the first call, and closed by
+	 * {@link #close()}.
+	 *
+	 * @return {@link SynesketchPublisher}
+	 */
+	public synchronized SynesketchPublisher getPublisher() {
+		if (publisher == null)
+			publisher = new SynesketchPublisher();
+		return publisher;
+	}
+
 	/**
 	 * Defines behaviour of transferring textual information into visual
 	 * information. In other words -- defines the synesthetic abilities of the
@@ -146,4 +244,91 @@ public void synesthetise( String text ) throws Exception
    notifyPApplet(synesthetiseDirect(text));
   }
 
+  /**
+   * Analyses the text on a worker thread of this instance and publishes the
+   * result there, so that the calling thread (e.g. the Swing event
+   * thread) isn't blocked. Texts are analysed one after another in the order
+   * they were passed. Sketches which render the updates should hand them over
+   * to their animation thread, e.g. through an {@link UpdateMailbox}.
+   *
+   * @param text  contains the text which is to be analyzed.
+   * @return  the {@link Future} result of the synesthetic analysis
+   * @throws RejectedExecutionException  if this instance has been closed
+   */
+  public Future<SynesketchState> synesthetiseAsync( final String text )
+  {
+    return getWorker().submit(new Callable<SynesketchState>() {
+      @Override
+      public SynesketchState call() throws Exception
+      {
+        SynesketchState state;
+        try {
+          state = synesthetiseDirect(text);
+        } catch (Exception ex) {
+          // nobody may be waiting for the result
+          ex.printStackTrace();
+          throw ex;
+        }
+        notifyPApplet(state);
+        return state;
+      }
+    });
+  }
+
+  /**
+   * Stops the worker thread of this instance once the texts passed to
+   * {@link #synesthetiseAsync(String)} so far have been analysed, and then
+   * closes the publisher, so that the update handler and the subscribers
+   * complete after their last update. Later calls of that method are
+   * rejected, and later results aren't published.
+   */
+  @Override
+  public synchronized void close()
+  {
+    if (closed)
+      return;
+    closed = true;
+    final SynesketchPublisher publisher = this.publisher;
+    if (worker != null) {
+      if (publisher != null) {
+        worker.execute(new Runnable() {
+          @Override
+          public void run()
+          {
+            publisher.close();
+          }
+        });
+      }
+      worker.shutdown();
+    } else if (publisher != null) {
+      publisher.close();
+    }
+  }
+
+  private synchronized ExecutorService getWorker()
+  {
+    if (closed)
+      throw new RejectedExecutionException("Synesthetiator is closed");
+    if (worker == null) {
+      // the thread also stops while idle, in case this instance is never
+      // closed
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+        WORKER_KEEP_ALIVE, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+          @Override
+          public Thread newThread( Runnable r )
+          {
+            Thread t = defaultFactory.newThread(r);
+            t.setDaemon(true);
+            return t;
+          }
+        });
+      executor.allowCoreThreadTimeOut(true);
+      worker = executor;
+    }
+    return worker;
+  }
+
 }
@@ -0,0 +1,70 @@
+package synesketch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * A lock-free, latest-wins mailbox which hands updates from the thread that
+ * analyses text over to the thread that renders them.
+ * <p>
+ * Updates can be posted from any thread through
+ * {@link #synesketchUpdate(SynesketchState)}. The render thread takes the
+ * latest update once per frame with {@link #poll()}, so that the fields it
+ * reads while drawing are only ever written by itself. An update which is
+ * replaced before it was taken is dropped, so that bursts of input coalesce
+ * into the newest state instead of queueing stale ones.
+ */
+public class UpdateMailbox implements UpdateHandler
+{
+  private final AtomicReference<SynesketchState> latest =
+    new AtomicReference<SynesketchState>();
+
+  private final AtomicLong posted = new AtomicLong(), coalesced = new AtomicLong();
+
+
+  /**
+   * Posts an update, replacing the one not yet taken, if any.
+   *
+   * @param state  the new state
+   */
+  @Override
+  public void synesketchUpdate( SynesketchState state )
+  {
+    posted.incrementAndGet();
+    if (latest.getAndSet(state) != null)
+      coalesced.incrementAndGet();
+  }
+
+  /**
+   * Takes the latest update.
+   *
+   * @return  the latest state posted since the last call, or
+   *   <code>null</code> if there is none
+   */
+  public SynesketchState poll()
+  {
+    return (latest.get() != null) ? latest.getAndSet(null) : null;
+  }
+
+  /**
+   * Returns the number of updates posted so far.
+   *
+   * @return  the number of updates
+   */
+  public long getPostedCount()
+  {
+    return posted.get();
+  }
+
+  /**
+   * Returns the number of updates which were replaced before they were
+   * taken.
+   *
+   * @return  the number of dropped updates
+   */
+  public long getCoalescedCount()
+  {
+    return coalesced.get();
+  }
+}
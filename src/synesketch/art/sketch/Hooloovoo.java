@@ -20,6 +20,7 @@
 
 import processing.core.PApplet;
 import synesketch.SynesketchState;
+import synesketch.UpdateMailbox;
 import synesketch.art.util.SynesketchPalette;
 import synesketch.emotion.Emotion;
 import synesketch.emotion.EmotionalState;
@@ -49,6 +50,8 @@ public class Hooloovoo extends PApplet
 	int delay = 1500;
 	float sat = 1.0f;
 
+	final UpdateMailbox updates = new UpdateMailbox();
+
 
 	public Hooloovoo(int dim)
 	{
@@ -72,6 +75,10 @@ public void setup()
 	@Override
 	public void draw()
 	{
+		SynesketchState update = updates.poll();
+		if (update != null)
+			applyUpdate(update);
+
 		//colorMode(RGB);
 		for (int i = 0; i < dim / size + 1; i++) {
 			for (int j = 0; j < dim / size + 1; j++) {
@@ -91,7 +98,17 @@ public void draw()
 	}
 
 
+	/**
+	 * Records the new state for {@link #draw()}, since the palette and sizes
+	 * must not change while a frame is being drawn.
+	 */
 	public void synesketchUpdate(SynesketchState state)
+	{
+		updates.synesketchUpdate(state);
+	}
+
+
+	void applyUpdate(SynesketchState state)
 	{
 		colorMode(HSB, 1.0f);
 		EmotionalState currentState = (EmotionalState) state;
@@ -18,8 +18,11 @@
  */
 package synesketch.art.sketch;
 
+import java.util.concurrent.ForkJoinTask;
+
 import processing.core.PApplet;
 import synesketch.SynesketchState;
+import synesketch.UpdateMailbox;
 import synesketch.art.util.SynesketchPalette;
 import synesketch.emotion.Emotion;
 import synesketch.emotion.EmotionalState;
@@ -33,6 +36,9 @@ public class Synemania extends PApplet
 
 	int dim = 400;
 
+	/** The factor of the number of particles of each emotion type. */
+	float density = 1.0f;
+
 	int maxHappies = 500;
 	int maxSaddies = 800;
 	int maxAngries = 800;
@@ -43,24 +49,31 @@ public class Synemania extends PApplet
 
 	EmotionalState currentEmotionalState = new EmotionalState();
 
+	final UpdateMailbox updates = new UpdateMailbox();
+
 	SynesketchPalette palette = new SynesketchPalette("standard");
 
 	SynesthetiatorEmotion syne;
 
-	Particle neutrals[] = new NeutralParticle[maxNeutrals];
-	Particle happies[] = new HappyParticle[maxHappies];
-	Particle saddies[] = new SadParticle[maxSaddies];
-	Particle angries[] = new AngryParticle[maxAngries];
-	Particle surprises[] = new SupriseParticle[maxSurprises];
-	Particle fearies[] = new FearParticle[maxFearies];
-	Particle disgusties[] = new DisgustParticle[maxDisgusties];
+	/** The particles of each emotion type, indexed by type + 1. */
+	SynemaniaParticles particles[] = new SynemaniaParticles[7];
 
-	Particle currentParticles[];
+	SynemaniaParticles currentParticles;
 
-	float sadTheta;
+	/**
+	 * The move of the particles drawn last, which runs on other threads until
+	 * the next frame.
+	 */
+	ForkJoinTask<?> pendingMove;
 
 	float saturationFactor = 1.0f;
 
+	/**
+	 * Whether particles are blended directly into the pixels rather than drawn
+	 * as points. It may be set from another thread.
+	 */
+	volatile boolean rasterizing = true;
+
 	StringBuffer currentText;
 
 
@@ -77,37 +90,39 @@ public Synemania(int dim)
 	}
 
 
+	/**
+	 * Class constructor for dense sketches, e.g. on large displays.
+	 *
+	 * @param dim  the size of the sketch
+	 * @param density  the factor of the number of particles of each emotion
+	 *   type
+	 */
+	public Synemania(int dim, float density)
+	{
+		super();
+		this.dim = dim;
+		this.density = density;
+	}
+
+
 	@Override
 	public void setup()
 	{
-		size(dim, dim, P3D);
+		// the pixels of the Java2D renderer are in main memory, while those of
+		// the OpenGL renderer would be read back and uploaded on every frame
+		size(dim, dim, rasterizing ? JAVA2D : P3D);
 		background(255);
 		noStroke();
 
-		for (int i = 0; i < maxNeutrals; i++) {
-			neutrals[i] = new NeutralParticle();
-		}
-		for (int i = 0; i < maxSaddies; i++) {
-			saddies[i] = new SadParticle();
-		}
-		for (int i = 0; i < maxHappies; i++) {
-			happies[i] = new HappyParticle();
-		}
-		for (int i = 0; i < maxAngries; i++) {
-			angries[i] = new AngryParticle();
-		}
-		for (int i = 0; i < maxSurprises; i++) {
-			surprises[i] = new SupriseParticle();
-		}
-		for (int i = 0; i < maxFearies; i++) {
-			fearies[i] = new FearParticle();
-		}
-		for (int i = 0; i < maxDisgusties; i++) {
-			disgusties[i] = new DisgustParticle();
-		}
+		createParticles(Emotion.NEUTRAL, maxNeutrals, null);
+		createParticles(Emotion.HAPPINESS, maxHappies, palette.getHappinessColors());
+		createParticles(Emotion.SADNESS, maxSaddies, palette.getSadnessColors());
+		createParticles(Emotion.ANGER, maxAngries, palette.getAngerColors());
+		createParticles(Emotion.FEAR, maxFearies, palette.getFearColors());
+		createParticles(Emotion.DISGUST, maxDisgusties, palette.getDisgustColors());
+		createParticles(Emotion.SURPRISE, maxSurprises, palette.getSurpriseColors());
 
-		sadTheta = random(TWO_PI);
-		currentParticles = neutrals;
+		currentParticles = particles[Emotion.NEUTRAL + 1];
 		try {
 			syne = new SynesthetiatorEmotion(this);
 		} catch (Exception e) {
@@ -116,7 +131,24 @@ public void setup()
 	}
 
 
+	void createParticles(int type, int count, int[] colors)
+	{
+		particles[type + 1] = new SynemaniaParticles(type,
+		    Math.round(count * density), dim, colors, (long) random(Integer.MAX_VALUE));
+	}
+
+
+	/**
+	 * Posts an update, which may come from any thread. It is applied by the
+	 * animation thread at the start of the next frame.
+	 */
 	public void synesketchUpdate(SynesketchState state)
+	{
+		updates.synesketchUpdate(state);
+	}
+
+
+	void applyUpdate(SynesketchState state)
 	{
 		currentEmotionalState = (EmotionalState) state;
 		//System.out.println(currentEmotionalState);
@@ -128,444 +160,66 @@ public void synesketchUpdate(SynesketchState state)
 	@Override
 	public void draw()
 	{
+		if (pendingMove != null) {
+			pendingMove.join();
+			pendingMove = null;
+		}
+
+		SynesketchState update = updates.poll();
+		if (update != null)
+			applyUpdate(update);
+
 		Emotion strongest =
 		    currentEmotionalState.getStrongestEmotion();
 		float weight = (float) strongest.getWeight();
 		saturationFactor = (float) Math.sqrt(weight);
 		int numberOfParticles =
-		    Math.round(currentParticles.length * saturationFactor);
-		for (int i = 0; i < numberOfParticles; i++) {
-			currentParticles[i].move();
+		    Math.round(currentParticles.size() * saturationFactor);
+		if (rasterizing) {
+			loadPixels();
+			currentParticles.rasterize(pixels, width, height, numberOfParticles,
+			    saturationFactor);
+			updatePixels();
+		} else {
+			currentParticles.draw(this, numberOfParticles, saturationFactor);
 		}
+		pendingMove = currentParticles.moveAsync(numberOfParticles);
 		//if (random(1000) > 999) {
 		//	saveFrame();
 		//}
 	}
 
 
-	public Particle[] getCurrentParticles(Emotion e)
-	{
-		int currentEmotion = e.getType();
-		if (currentEmotion == Emotion.HAPPINESS) {
-			return happies;
-		} else if (currentEmotion == Emotion.SADNESS) {
-			return saddies;
-		} else if (currentEmotion == Emotion.ANGER) {
-			return angries;
-		} else if (currentEmotion == Emotion.FEAR) {
-			return fearies;
-		} else if (currentEmotion == Emotion.DISGUST) {
-			return disgusties;
-		} else if (currentEmotion == Emotion.SURPRISE) {
-			return surprises;
-		} else {
-			return neutrals;
-		}
-	}
-
-
-	public int saturate(int color)
-	{
-		colorMode(HSB, 1.0f);
-		color = color(hue(color), saturation(color) * 0.98f, brightness(color));
-		colorMode(RGB, 255);
-		return color;
-	}
-
-	/*
-	 * Classes which describe emotion-specific particles, that is visual representation of each emotion.
+	/**
+	 * Sets whether particles are blended directly into the pixels of the
+	 * sketch, which is the default, or drawn as points through the renderer,
+	 * which is much slower for many particles.
+	 * <p>
+	 * The renderer is chosen when the sketch is set up: Java2D when
+	 * rasterizing, OpenGL otherwise. Both ways of drawing work with either
+	 * renderer, so this may also be changed while the sketch runs.
+	 *
+	 * @param rasterizing  <code>true</code> to blend particles into the pixels
 	 */
-
-	public abstract class Particle
+	public void setRasterizing(boolean rasterizing)
 	{
-
-		int color;
-		float x, y, vx, vy, theta,
-		    speed, speedD, thetaD, thetaDD;
-
-
-		Particle()
-		{
-			x = dim / 2;
-			y = dim / 2;
-		}
-
-
-		abstract void collide();
-
-
-		abstract void move();
-
+		this.rasterizing = rasterizing;
 	}
 
-	public class NeutralParticle extends Particle
-	{
-
-		float gray;
-
-
-		NeutralParticle()
-		{
-			super();
-			gray = random(255);
-		}
 
-
-		@Override
-		void collide()
-		{
-			x = dim / 2;
-			y = dim / 2;
-			theta = random(TWO_PI);
-			speed = random(0.5f, 3.5f);
-			speedD = random(0.996f, 1.001f);
-			thetaD = 0;
-			thetaDD = 0;
-			while (abs(thetaDD) < 0.00001) {
-				thetaDD = random(-0.001f, 0.001f);
-			}
-		}
-
-
-		@Override
-		void move()
-		{
-			stroke(gray, 28);
-			point(x, y - 1);
-			x += vx;
-			y += vy;
-			vx = speed * sin(theta);
-			vy = speed * cos(theta);
-			if (random(1000) > 990) {
-				x = dim / 2;
-				y = dim / 2;
-				collide();
-			}
-			if ((x < -dim) || (x > dim * 2) || (y < -dim) || (y > dim * 2)) {
-				x = dim / 2;
-				y = dim / 2;
-				collide();
-			}
-		}
-	}
-
-	public class HappyParticle extends Particle
+	SynemaniaParticles getCurrentParticles(Emotion e)
 	{
-
-		@Override
-		void collide()
-		{
-			x = dim / 2;
-			y = dim / 2;
-			theta = random(TWO_PI);
-			speed = random(0.5f, 3.5f);
-			speedD = random(0.996f, 1.001f);
-			thetaD = 0;
-			thetaDD = 0;
-			while (abs(thetaDD) < 0.00001) {
-				thetaDD = random(-0.001f, 0.001f);
-			}
-			color = palette.getRandomHappinessColor();
-		}
-
-
-		@Override
-		void move()
-		{
-			stroke(red(color), green(color), blue(color),
-			    30 * saturationFactor);
-			point(x, y - 1);
-			stroke(0, 25 * saturationFactor);
-			point(x, y + 1);
-
-			x += vx;
-			y += vy;
-			vx = speed * sin(theta);
-			vy = speed * cos(theta);
-			theta += thetaD;
-			thetaD += thetaDD;
-			speed *= speedD;
-
-			if (random(1000) > 997) {
-				speedD = 1.0f;
-				thetaDD = 0.00001f;
-				if (random(100) > 70) {
-					x = dim / 2;
-					y = dim / 2;
-					collide();
-				}
-			}
-			if ((x < -dim) || (x > dim * 2) || (y < -dim) || (y > dim * 2)) {
-				collide();
-			}
-		}
+		int type = e.getType() + 1;
+		return particles[(type >= 0 && type < particles.length) ? type : 0];
 	}
 
-	public class SadParticle extends Particle
-	{
-
-		SadParticle()
-		{
-			collide();
-		}
-
 
-		@Override
-		void collide()
-		{
-			x = dim / 2;
-			y = dim / 2;
-			speed = random(2, 32);
-			speedD = random(0.0001f, 0.001f);
-			theta = sadTheta + random(-0.1f, 0.1f);
-			thetaD = 0;
-			thetaDD = 0;
-
-			while (abs(thetaDD) < 0.001) {
-				thetaDD = random(-0.1f, 0.1f);
-			}
-
-			color = palette.getRandomSadnessColor();
-		}
-
-
-		@Override
-		void move()
-		{
-			int mya = 0;
-			stroke(red(color), green(color), blue(color), 42 * saturationFactor);
-			point(x, y);
-			stroke(red(mya), green(mya), blue(mya), 5 * saturationFactor);
-			point(x, y);
-			stroke(red(mya), green(mya), blue(mya), 15 * saturationFactor);
-			point(dim - x, y);
-			x += speed * sin(theta);
-			y += speed * cos(theta);
-			theta += thetaD;
-			thetaD += thetaDD;
-			speed -= speedD;
-
-			if ((x < -dim) || (x > dim * 2) || (y < -dim) || (y > dim * 2)) {
-				collide();
-			}
-		}
-	}
-
-	public class AngryParticle extends Particle
-	{
-
-		@Override
-		void collide()
-		{
-			x = dim / 2;
-			y = dim / 2;
-			theta = random(TWO_PI);
-			speed = random(0.5f, 3.5f);
-			speedD = random(0.996f, 1.001f);
-			thetaD = 0;
-			thetaDD = 0;
-			while (abs(thetaDD) < 0.00001) {
-				thetaDD = random(-0.001f, 0.001f);
-			}
-			color = palette.getRandomAngerColor();
-		}
-
-
-		@Override
-		void move()
-		{
-			stroke(255, 8);
-			point(x, y - 1);
-			float f = 1.0f;
-			stroke(red(color) * f,
-			    green(color) * f,
-			    blue(color) * f,
-			    42 * saturationFactor);
-			point(x, y + 1);
-			x += vx;
-			y += vy;
-			vx = speed * sin(theta);
-			vy = speed * cos(theta);
-			theta += thetaD;
-			if (random(100) > 95) {
-				thetaD += thetaDD;
-			}
-			speed *= speedD;
-
-			if (random(100) > 98) {
-				speedD = 1.0f;
-				if (random(100) > 50) {
-					collide();
-				}
-			}
-			if ((x < -dim) || (x > dim * 2) || (y < -dim) || (y > dim * 2)) {
-				collide();
-			}
-		}
-	}
-
-	public class DisgustParticle extends Particle
-	{
-
-		@Override
-		void collide()
-		{
-			x = dim / 2;
-			y = dim / 2;
-			theta = random(TWO_PI);
-			speed = random(1, 6);
-			speedD = random(0.95f, 1);
-			thetaD = 0;
-			thetaDD = 0;
-			color = palette.getRandomDisgustColor();
-
-			while (abs(thetaDD) < 0.00001) {
-				thetaDD = random(-0.001f, 0.001f);
-			}
-		}
-
-
-		@Override
-		void move()
-		{
-
-			stroke(red(color), green(color), blue(color), 20 * saturationFactor);
-			point(x, y);
-			stroke(random(100, 200), 7 * saturationFactor);
-			point(x, y - 1);
-			stroke(0, 25 * saturationFactor);
-			point(x, dim - y);
-
-			x += vx;
-			y += vy;
-			vx = speed * sin(theta);
-			vy = speed * cos(theta);
-			theta += thetaD;
-			thetaD += thetaDD;
-			if (random(100) > 90) {
-				speed *= speedD;
-				speedD *= 0.999999;
-			}
-
-			if (random(1000) > 995) {
-				speed *= -1;
-				speedD = 2 - speedD;
-				if (random(100) > 30) {
-					x = dim / 2;
-					y = dim / 2;
-					collide();
-				}
-			}
-
-		}
-
-	}
-
-	public class SupriseParticle extends Particle
-	{
-
-		@Override
-		void collide()
-		{
-			x = dim / 2;
-			y = dim / 2;
-			theta = random(TWO_PI);
-			speed = random(1.0f, 6.0f);
-
-			speedD = random(0.95f, 1.001f);
-			thetaD = 0;
-			thetaDD = 0;
-			color = palette.getRandomSurpriseColor();
-
-			while (abs(thetaDD) < 0.00001) {
-				thetaDD = random(-0.001f, 0.001f);
-			}
-		}
-
-
-		@Override
-		void move()
-		{
-			stroke(red(color), green(color), blue(color), 50 * saturationFactor);
-			point(x, y);
-			stroke(0, 25 * saturationFactor);
-			point(x, y + 1);
-			for (int dy = 1; dy < 3; dy++) {
-				stroke(red(color), green(color), blue(color), (80 - dy * 4)
-				    * saturationFactor);
-				point(x, y - dy);
-			}
-
-			x += vx;
-			y += vy;
-			vx = speed * sin(theta);
-			vy = speed * cos(theta);
-			theta += thetaD;
-
-			thetaD += thetaDD;
-			speed *= speedD;
-			speedD *= 0.9999f;
-
-			if (random(1000) > 980) {
-				speed *= -1;
-				speedD = 2 - speedD;
-				if (random(100) > 30) {
-					x = dim / 2;
-					y = dim / 2;
-					collide();
-				}
-			}
-		}
-	}
-
-	public class FearParticle extends Particle
+	public int saturate(int color)
 	{
-
-		@Override
-		void collide()
-		{
-			theta = random(TWO_PI);
-			speed = random(0.5f, 3.5f);
-			speedD = random(0.996f, 1.001f);
-			thetaD = 0;
-			thetaDD = 0;
-			color = palette.getRandomFearColor();
-
-			while (abs(thetaDD) < 0.00001) {
-				thetaDD = random(-0.001f, 0.001f);
-			}
-		}
-
-
-		@Override
-		void move()
-		{
-			stroke(red(color), green(color), blue(color), 50 * saturationFactor);
-			point(x, y);
-			stroke(0, 30 * saturationFactor);
-			point(x, y - 1);
-			stroke(255, 20 * saturationFactor);
-			point(x, y + 1);
-
-			x += vx;
-			y += vy;
-			vx = speed * sin(theta);
-			vy = speed * cos(theta);
-
-			if (random(1000) > 950) {
-				speedD = 1.0f;
-				thetaDD = 0.00001f;
-				if (random(100) > 70) {
-					collide();
-				}
-			}
-			if ((x < -dim) || (x > dim * 2) || (y < -dim) || (y > dim * 2)) {
-				x = dim / 2;
-				y = dim / 2;
-				collide();
-			}
-		}
-
+		colorMode(HSB, 1.0f);
+		color = color(hue(color), saturation(color) * 0.98f, brightness(color));
+		colorMode(RGB, 255);
+		return color;
 	}
 
 }
@@ -0,0 +1,760 @@
+/**
+ * Synesketch
+ * Copyright (C) 2008  Uros Krcadinac
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package synesketch.art.sketch;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import processing.core.PApplet;
+import synesketch.emotion.Emotion;
+
+
+/**
+ * The particles of one emotion type in {@link Synemania}, that is the visual
+ * representation of that emotion.
+ * <p>
+ * The particles are stored as one array per attribute rather than as one
+ * object per particle, and every emotion type has its own update and drawing
+ * loop over these arrays, so that large numbers of particles can be moved
+ * without virtual calls or pointer chasing.
+ * <p>
+ * The particles are moved in parallel on the common {@link ForkJoinPool}, in
+ * chunks of {@value #CHUNK_SIZE} particles. Every chunk has its own random
+ * numbers, so that the threads don't contend for a shared generator.
+ * <p>
+ * The particles are drawn either through the drawing methods of the sketch
+ * or by blending them directly into its pixels (see
+ * {@link #rasterize(int[], int, int, float)}), which is much faster.
+ */
+class SynemaniaParticles
+{
+
+	static final int CHUNK_SIZE = 4096;
+
+	private static final int SEED_STRIDE = 16;
+
+	private static final float TWO_PI = (float) (2 * Math.PI);
+
+	private static final int SINE_TABLE_BITS = 12;
+
+	private static final int SINE_TABLE_MASK = (1 << SINE_TABLE_BITS) - 1;
+
+	private static final float SINE_TABLE_SCALE = (1 << SINE_TABLE_BITS) / TWO_PI;
+
+	/** One period of the sine function; the cosine is a quarter ahead. */
+	private static final float[] SINE_TABLE = new float[1 << SINE_TABLE_BITS];
+
+	static {
+		for (int i = 0; i < SINE_TABLE.length; i++)
+			SINE_TABLE[i] = (float) Math.sin(i / SINE_TABLE_SCALE);
+	}
+
+	final int type;
+
+	final float[] x, y, vx, vy, theta, speed, speedD, thetaD, thetaDD;
+
+	/** The index of the color of each particle in the palette. */
+	final int[] color;
+
+	/**
+	 * The opaque colors of the particles. The first color, black, is that of
+	 * particles which haven't been launched yet, except for neutral particles,
+	 * whose palette is all gray levels.
+	 */
+	private final int[] palette;
+
+	/** The random numbers of the particles drawn by the sketch thread. */
+	private final Xorshift drawRandom;
+
+	private final float dim, centre;
+
+	/** The direction all sad particles head to. */
+	private float direction;
+
+	/**
+	 * The state of the random numbers of each chunk, spaced out so that
+	 * threads updating neighbouring chunks don't share cache lines.
+	 */
+	private final long[] seeds;
+
+
+	/**
+	 * Class constructor. The particles rest in the centre, except for sad
+	 * particles, which start moving in a random direction.
+	 *
+	 * @param type  the emotion type (integer constant defined by the
+	 *   {@link Emotion} class)
+	 * @param capacity  the number of particles
+	 * @param dim  the size of the sketch
+	 * @param colors  the colors of the particles, or <code>null</code> for
+	 *   neutral particles, which are gray
+	 * @param seed  the seed of the random numbers of the particles
+	 */
+	SynemaniaParticles(int type, int capacity, int dim, int[] colors, long seed)
+	{
+		this.type = type;
+		this.dim = dim;
+		this.centre = dim / 2;
+		if (colors != null) {
+			palette = new int[1 + colors.length];
+			palette[0] = opaque(0);
+			for (int c = 0; c < colors.length; c++)
+				palette[1 + c] = opaque(colors[c]);
+		} else {
+			palette = new int[256];
+			for (int c = 0; c < palette.length; c++)
+				palette[c] = opaque(c * 0x010101);
+		}
+		x = new float[capacity];
+		y = new float[capacity];
+		vx = new float[capacity];
+		vy = new float[capacity];
+		theta = new float[capacity];
+		speed = new float[capacity];
+		speedD = new float[capacity];
+		thetaD = new float[capacity];
+		thetaDD = new float[capacity];
+		color = new int[capacity];
+
+		seeds = new long[chunkCount(capacity) * SEED_STRIDE];
+		for (int c = 0; c < seeds.length; c += SEED_STRIDE)
+			seeds[c] = Xorshift.mix(seed + c);
+
+		drawRandom = new Xorshift(Xorshift.mix(seed - 2));
+		Xorshift random = new Xorshift(Xorshift.mix(seed - 1));
+		direction = random.random(TWO_PI);
+		for (int i = 0; i < capacity; i++) {
+			x[i] = centre;
+			y[i] = centre;
+			if (type == Emotion.SADNESS)
+				collideSad(i, random);
+			else if (type == Emotion.NEUTRAL)
+				color[i] = (int) random.random(255);
+		}
+	}
+
+
+	int size()
+	{
+		return x.length;
+	}
+
+
+	/**
+	 * Moves the first particles one step and waits until they have been
+	 * moved.
+	 *
+	 * @param count  the number of particles to move
+	 */
+	void move(int count)
+	{
+		ForkJoinPool.commonPool().invoke(new MoveTask(0, chunkCount(count), count));
+	}
+
+
+	/**
+	 * Starts moving the first particles one step. They must not be accessed
+	 * until the returned task has been joined.
+	 *
+	 * @param count  the number of particles to move
+	 * @return  the running task
+	 */
+	ForkJoinTask<?> moveAsync(int count)
+	{
+		return ForkJoinPool.commonPool().submit(new MoveTask(0, chunkCount(count), count));
+	}
+
+
+	private static int chunkCount(int count)
+	{
+		return (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	}
+
+
+	private void moveChunk(int chunk, int count)
+	{
+		int from = chunk * CHUNK_SIZE, to = Math.min(from + CHUNK_SIZE, count);
+		Xorshift random = new Xorshift(seeds[chunk * SEED_STRIDE]);
+		switch (type) {
+		case Emotion.HAPPINESS:
+			moveHappy(from, to, random);
+			break;
+		case Emotion.SADNESS:
+			moveSad(from, to, random);
+			break;
+		case Emotion.ANGER:
+			moveAngry(from, to, random);
+			break;
+		case Emotion.FEAR:
+			moveFear(from, to, random);
+			break;
+		case Emotion.DISGUST:
+			moveDisgust(from, to, random);
+			break;
+		case Emotion.SURPRISE:
+			moveSurprise(from, to, random);
+			break;
+		default:
+			moveNeutral(from, to, random);
+			break;
+		}
+		seeds[chunk * SEED_STRIDE] = random.seed;
+	}
+
+
+	/** Moves a range of chunks, splitting it in halves down to single chunks. */
+	private final class MoveTask extends RecursiveAction
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to, count;
+
+
+		MoveTask(int from, int to, int count)
+		{
+			this.from = from;
+			this.to = to;
+			this.count = count;
+		}
+
+
+		@Override
+		protected void compute()
+		{
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new MoveTask(from, middle, count),
+				    new MoveTask(middle, to, count));
+			} else if (to > from) {
+				moveChunk(from, count);
+			}
+		}
+	}
+
+
+	/**
+	 * Draws the first particles at their current positions.
+	 *
+	 * @param g  the sketch to draw on
+	 * @param count  the number of particles to draw
+	 * @param saturation  the factor of the opacity of the particles
+	 */
+	void draw(PApplet g, int count, float saturation)
+	{
+		switch (type) {
+		case Emotion.HAPPINESS:
+			for (int i = 0; i < count; i++) {
+				g.stroke(palette[color[i]], 30 * saturation);
+				g.point(x[i], y[i] - 1);
+				g.stroke(0, 25 * saturation);
+				g.point(x[i], y[i] + 1);
+			}
+			break;
+
+		case Emotion.SADNESS:
+			for (int i = 0; i < count; i++) {
+				g.stroke(palette[color[i]], 42 * saturation);
+				g.point(x[i], y[i]);
+				g.stroke(0, 5 * saturation);
+				g.point(x[i], y[i]);
+				g.stroke(0, 15 * saturation);
+				g.point(dim - x[i], y[i]);
+			}
+			break;
+
+		case Emotion.ANGER:
+			for (int i = 0; i < count; i++) {
+				g.stroke(255, 8);
+				g.point(x[i], y[i] - 1);
+				g.stroke(palette[color[i]], 42 * saturation);
+				g.point(x[i], y[i] + 1);
+			}
+			break;
+
+		case Emotion.FEAR:
+			for (int i = 0; i < count; i++) {
+				g.stroke(palette[color[i]], 50 * saturation);
+				g.point(x[i], y[i]);
+				g.stroke(0, 30 * saturation);
+				g.point(x[i], y[i] - 1);
+				g.stroke(255, 20 * saturation);
+				g.point(x[i], y[i] + 1);
+			}
+			break;
+
+		case Emotion.DISGUST:
+			for (int i = 0; i < count; i++) {
+				g.stroke(palette[color[i]], 20 * saturation);
+				g.point(x[i], y[i]);
+				g.stroke(g.random(100, 200), 7 * saturation);
+				g.point(x[i], y[i] - 1);
+				g.stroke(0, 25 * saturation);
+				g.point(x[i], dim - y[i]);
+			}
+			break;
+
+		case Emotion.SURPRISE:
+			for (int i = 0; i < count; i++) {
+				int c = palette[color[i]];
+				g.stroke(c, 50 * saturation);
+				g.point(x[i], y[i]);
+				g.stroke(0, 25 * saturation);
+				g.point(x[i], y[i] + 1);
+				for (int dy = 1; dy < 3; dy++) {
+					g.stroke(c, (80 - dy * 4) * saturation);
+					g.point(x[i], y[i] - dy);
+				}
+			}
+			break;
+
+		default:
+			for (int i = 0; i < count; i++) {
+				g.stroke(palette[color[i]], 28);
+				g.point(x[i], y[i] - 1);
+			}
+			break;
+		}
+	}
+
+
+	/**
+	 * Draws the first particles at their current positions by blending them
+	 * directly into the pixels of the sketch, with the same colors as
+	 * {@link #draw(PApplet, int, float)}. The caller has to load the pixels
+	 * before and to update them after.
+	 *
+	 * @param pixels  the pixels of the sketch
+	 * @param width  the width of the sketch
+	 * @param height  the height of the sketch
+	 * @param count  the number of particles to draw
+	 * @param saturation  the factor of the opacity of the particles
+	 */
+	void rasterize(int[] pixels, int width, int height, int count, float saturation)
+	{
+		switch (type) {
+		case Emotion.HAPPINESS: {
+			int a = alpha(30 * saturation), black = alpha(25 * saturation);
+			long[] colors = premultiply(a);
+			for (int i = 0; i < count; i++) {
+				blend(pixels, width, height, x[i], y[i] - 1, colors[color[i]], a);
+				blend(pixels, width, height, x[i], y[i] + 1, 0L, black);
+			}
+			break;
+		}
+
+		case Emotion.SADNESS: {
+			int a = alpha(42 * saturation), shade = alpha(5 * saturation),
+			    mirror = alpha(15 * saturation);
+			long[] colors = premultiply(a);
+			for (int i = 0; i < count; i++) {
+				blend(pixels, width, height, x[i], y[i], colors[color[i]], a);
+				blend(pixels, width, height, x[i], y[i], 0L, shade);
+				blend(pixels, width, height, dim - x[i], y[i], 0L, mirror);
+			}
+			break;
+		}
+
+		case Emotion.ANGER: {
+			int white = alpha(8), a = alpha(42 * saturation);
+			long whiteColor = premultiply(0xffffff, white);
+			long[] colors = premultiply(a);
+			for (int i = 0; i < count; i++) {
+				blend(pixels, width, height, x[i], y[i] - 1, whiteColor, white);
+				blend(pixels, width, height, x[i], y[i] + 1, colors[color[i]], a);
+			}
+			break;
+		}
+
+		case Emotion.FEAR: {
+			int a = alpha(50 * saturation), black = alpha(30 * saturation),
+			    white = alpha(20 * saturation);
+			long whiteColor = premultiply(0xffffff, white);
+			long[] colors = premultiply(a);
+			for (int i = 0; i < count; i++) {
+				blend(pixels, width, height, x[i], y[i], colors[color[i]], a);
+				blend(pixels, width, height, x[i], y[i] - 1, 0L, black);
+				blend(pixels, width, height, x[i], y[i] + 1, whiteColor, white);
+			}
+			break;
+		}
+
+		case Emotion.DISGUST: {
+			int a = alpha(20 * saturation), gray = alpha(7 * saturation),
+			    mirror = alpha(25 * saturation);
+			long[] colors = premultiply(a);
+			for (int i = 0; i < count; i++) {
+				int level = (int) drawRandom.random(100, 200);
+				blend(pixels, width, height, x[i], y[i], colors[color[i]], a);
+				blend(pixels, width, height, x[i], y[i] - 1,
+				    premultiply(level * 0x010101, gray), gray);
+				blend(pixels, width, height, x[i], dim - y[i], 0L, mirror);
+			}
+			break;
+		}
+
+		case Emotion.SURPRISE: {
+			int a = alpha(50 * saturation), black = alpha(25 * saturation),
+			    a1 = alpha(76 * saturation), a2 = alpha(72 * saturation);
+			long[] colors = premultiply(a), colors1 = premultiply(a1),
+			    colors2 = premultiply(a2);
+			for (int i = 0; i < count; i++) {
+				int c = color[i];
+				blend(pixels, width, height, x[i], y[i], colors[c], a);
+				blend(pixels, width, height, x[i], y[i] + 1, 0L, black);
+				blend(pixels, width, height, x[i], y[i] - 1, colors1[c], a1);
+				blend(pixels, width, height, x[i], y[i] - 2, colors2[c], a2);
+			}
+			break;
+		}
+
+		default: {
+			int a = alpha(28);
+			long[] colors = premultiply(a);
+			for (int i = 0; i < count; i++)
+				blend(pixels, width, height, x[i], y[i] - 1, colors[color[i]], a);
+			break;
+		}
+		}
+	}
+
+
+	/*
+	 * Blending of premultiplied colors, with opacities between 0 and 256
+	 *
+	 * A premultiplied color keeps 8 fractional bits per channel, the red and
+	 * blue channels in the upper and the green channel in the lower half of a
+	 * long, so that the blended pixel is rounded only once.
+	 */
+
+	/** Converts an opacity between 0 and 255 to one between 0 and 256. */
+	private static int alpha(float alpha)
+	{
+		int value = Math.round(alpha * (256f / 255));
+		return (value < 0) ? 0 : (value > 256) ? 256 : value;
+	}
+
+
+	/** Returns the palette premultiplied with an opacity. */
+	private long[] premultiply(int alpha)
+	{
+		long[] value = new long[palette.length];
+		for (int c = 0; c < value.length; c++)
+			value[c] = premultiply(palette[c], alpha);
+		return value;
+	}
+
+
+	private static long premultiply(int rgb, int alpha)
+	{
+		return ((long) ((rgb & 0xff00ff) * alpha) << 32) |
+		    ((rgb & 0x00ff00) * alpha);
+	}
+
+
+	/** Blends a premultiplied color over the pixel which a point covers. */
+	private static void blend(int[] pixels, int width, int height, float x,
+	    float y, long premultiplied, int alpha)
+	{
+		x += 0.5f;
+		y += 0.5f;
+		if (x >= 0 && y >= 0 && x < width && y < height) {
+			int i = (int) y * width + (int) x;
+			int inverse = 256 - alpha, pixel = pixels[i];
+			int rb = (int) (premultiplied >>> 32) + (pixel & 0xff00ff) * inverse + 0x800080;
+			int g = (int) premultiplied + (pixel & 0x00ff00) * inverse + 0x008000;
+			pixels[i] = 0xff000000 | ((rb >>> 8) & 0xff00ff) | ((g >>> 8) & 0x00ff00);
+		}
+	}
+
+
+	/*
+	 * Update loops, one per emotion type
+	 */
+
+	private void moveNeutral(int from, int to, Xorshift random)
+	{
+		for (int i = from; i < to; i++) {
+			x[i] += vx[i];
+			y[i] += vy[i];
+			vx[i] = speed[i] * sin(theta[i]);
+			vy[i] = speed[i] * cos(theta[i]);
+			if (random.random(1000) > 990 || isOutside(i)) {
+				launch(i, random, 0.5f, 3.5f, 0.996f, 1.001f);
+			}
+		}
+	}
+
+
+	private void moveHappy(int from, int to, Xorshift random)
+	{
+		for (int i = from; i < to; i++) {
+			x[i] += vx[i];
+			y[i] += vy[i];
+			vx[i] = speed[i] * sin(theta[i]);
+			vy[i] = speed[i] * cos(theta[i]);
+			theta[i] += thetaD[i];
+			thetaD[i] += thetaDD[i];
+			speed[i] *= speedD[i];
+
+			if (random.random(1000) > 997) {
+				speedD[i] = 1.0f;
+				thetaDD[i] = 0.00001f;
+				if (random.random(100) > 70) {
+					launch(i, random, 0.5f, 3.5f, 0.996f, 1.001f);
+				}
+			}
+			if (isOutside(i)) {
+				launch(i, random, 0.5f, 3.5f, 0.996f, 1.001f);
+			}
+		}
+	}
+
+
+	private void moveSad(int from, int to, Xorshift random)
+	{
+		for (int i = from; i < to; i++) {
+			x[i] += speed[i] * sin(theta[i]);
+			y[i] += speed[i] * cos(theta[i]);
+			theta[i] += thetaD[i];
+			thetaD[i] += thetaDD[i];
+			speed[i] -= speedD[i];
+
+			if (isOutside(i)) {
+				collideSad(i, random);
+			}
+		}
+	}
+
+
+	private void moveAngry(int from, int to, Xorshift random)
+	{
+		for (int i = from; i < to; i++) {
+			x[i] += vx[i];
+			y[i] += vy[i];
+			vx[i] = speed[i] * sin(theta[i]);
+			vy[i] = speed[i] * cos(theta[i]);
+			theta[i] += thetaD[i];
+			if (random.random(100) > 95) {
+				thetaD[i] += thetaDD[i];
+			}
+			speed[i] *= speedD[i];
+
+			if (random.random(100) > 98) {
+				speedD[i] = 1.0f;
+				if (random.random(100) > 50) {
+					launch(i, random, 0.5f, 3.5f, 0.996f, 1.001f);
+				}
+			}
+			if (isOutside(i)) {
+				launch(i, random, 0.5f, 3.5f, 0.996f, 1.001f);
+			}
+		}
+	}
+
+
+	private void moveFear(int from, int to, Xorshift random)
+	{
+		for (int i = from; i < to; i++) {
+			x[i] += vx[i];
+			y[i] += vy[i];
+			vx[i] = speed[i] * sin(theta[i]);
+			vy[i] = speed[i] * cos(theta[i]);
+
+			if (random.random(1000) > 950) {
+				speedD[i] = 1.0f;
+				thetaDD[i] = 0.00001f;
+				if (random.random(100) > 70) {
+					turn(i, random, 0.5f, 3.5f, 0.996f, 1.001f);
+				}
+			}
+			if (isOutside(i)) {
+				launch(i, random, 0.5f, 3.5f, 0.996f, 1.001f);
+			}
+		}
+	}
+
+
+	private void moveDisgust(int from, int to, Xorshift random)
+	{
+		for (int i = from; i < to; i++) {
+			x[i] += vx[i];
+			y[i] += vy[i];
+			vx[i] = speed[i] * sin(theta[i]);
+			vy[i] = speed[i] * cos(theta[i]);
+			theta[i] += thetaD[i];
+			thetaD[i] += thetaDD[i];
+			if (random.random(100) > 90) {
+				speed[i] *= speedD[i];
+				speedD[i] *= 0.999999f;
+			}
+
+			if (random.random(1000) > 995) {
+				speed[i] *= -1;
+				speedD[i] = 2 - speedD[i];
+				if (random.random(100) > 30) {
+					launch(i, random, 1, 6, 0.95f, 1);
+				}
+			}
+		}
+	}
+
+
+	private void moveSurprise(int from, int to, Xorshift random)
+	{
+		for (int i = from; i < to; i++) {
+			x[i] += vx[i];
+			y[i] += vy[i];
+			vx[i] = speed[i] * sin(theta[i]);
+			vy[i] = speed[i] * cos(theta[i]);
+			theta[i] += thetaD[i];
+			thetaD[i] += thetaDD[i];
+			speed[i] *= speedD[i];
+			speedD[i] *= 0.9999f;
+
+			if (random.random(1000) > 980) {
+				speed[i] *= -1;
+				speedD[i] = 2 - speedD[i];
+				if (random.random(100) > 30) {
+					launch(i, random, 1, 6, 0.95f, 1.001f);
+				}
+			}
+		}
+	}
+
+
+	/*
+	 * Collisions, which give a particle a new random course
+	 */
+
+	/** Restarts a particle from the centre. */
+	private void launch(int i, Xorshift random, float minSpeed, float maxSpeed,
+	    float minSpeedD, float maxSpeedD)
+	{
+		x[i] = centre;
+		y[i] = centre;
+		turn(i, random, minSpeed, maxSpeed, minSpeedD, maxSpeedD);
+	}
+
+
+	/** Sends a particle on a new course from where it is. */
+	private void turn(int i, Xorshift random, float minSpeed, float maxSpeed,
+	    float minSpeedD, float maxSpeedD)
+	{
+		theta[i] = random.random(TWO_PI);
+		speed[i] = random.random(minSpeed, maxSpeed);
+		speedD[i] = random.random(minSpeedD, maxSpeedD);
+		thetaD[i] = 0;
+		thetaDD[i] = random.randomNonZero(0.001f, 0.00001f);
+		if (type != Emotion.NEUTRAL)
+			color[i] = 1 + (int) random.random(palette.length - 1);
+	}
+
+
+	private void collideSad(int i, Xorshift random)
+	{
+		x[i] = centre;
+		y[i] = centre;
+		speed[i] = random.random(2, 32);
+		speedD[i] = random.random(0.0001f, 0.001f);
+		theta[i] = direction + random.random(-0.1f, 0.1f);
+		thetaD[i] = 0;
+		thetaDD[i] = random.randomNonZero(0.1f, 0.001f);
+		color[i] = 1 + (int) random.random(palette.length - 1);
+	}
+
+
+	private boolean isOutside(int i)
+	{
+		return (x[i] < -dim) || (x[i] > dim * 2) || (y[i] < -dim) || (y[i] > dim * 2);
+	}
+
+
+	private static int opaque(int color)
+	{
+		return 0xff000000 | color;
+	}
+
+
+	private static float sin(float angle)
+	{
+		return SINE_TABLE[(int) (angle * SINE_TABLE_SCALE) & SINE_TABLE_MASK];
+	}
+
+
+	private static float cos(float angle)
+	{
+		return SINE_TABLE[((int) (angle * SINE_TABLE_SCALE) + (1 << (SINE_TABLE_BITS - 2))) & SINE_TABLE_MASK];
+	}
+
+
+	/**
+	 * Random numbers of one chunk (xorshift, which is much cheaper than
+	 * {@link java.util.Random}). Instances are not thread-safe.
+	 */
+	private static final class Xorshift
+	{
+
+		long seed;
+
+
+		Xorshift(long seed)
+		{
+			this.seed = seed;
+		}
+
+
+		/** Turns consecutive numbers into well spread, non-zero seeds (SplitMix64). */
+		static long mix(long seed)
+		{
+			seed = (seed ^ (seed >>> 30)) * 0xbf58476d1ce4e5b9L;
+			seed = (seed ^ (seed >>> 27)) * 0x94d049bb133111ebL;
+			seed ^= seed >>> 31;
+			return (seed != 0) ? seed : 1;
+		}
+
+
+		float random(float high)
+		{
+			seed ^= seed << 13;
+			seed ^= seed >>> 7;
+			seed ^= seed << 17;
+			return (seed >>> 40) * 0x1.0p-24f * high;
+		}
+
+
+		float random(float low, float high)
+		{
+			return low + random(high - low);
+		}
+
+
+		/** Returns a random number between <code>-bound</code> and <code>bound</code> of at least <code>min</code> in magnitude. */
+		float randomNonZero(float bound, float min)
+		{
+			float value;
+			do {
+				value = random(-bound, bound);
+			} while (Math.abs(value) < min);
+			return value;
+		}
+	}
+
+}
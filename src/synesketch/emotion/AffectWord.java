@@ -188,7 +188,9 @@ public void flipValence()
 	 */
 	public AffectWord clone() {
     try {
-      return (AffectWord) super.clone();
+      AffectWord clone = (AffectWord) super.clone();
+      clone.weights = weights.clone();
+      return clone;
     } catch (CloneNotSupportedException e) {
       throw new Error(e);
     }
@@ -0,0 +1,241 @@
+package synesketch.emotion;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import synesketch.emotion.util.Lexicon;
+
+
+/**
+ * The affect words found in a text, recorded as references to immutable
+ * lexicon entries together with the adjustments applied to each hit.
+ * <p>
+ * Instead of cloning and modifying an {@link AffectWord} for every hit, only
+ * the lexicon entry, the coefficient its weights are adjusted by and whether
+ * its valence is flipped are recorded. The adjusted weights are computed on
+ * demand; they are the same as those of an {@link AffectWord} which has been
+ * {@link AffectWord#flipValence() flipped} (if negated) and then
+ * {@link AffectWord#adjustWeights(double) adjusted}.
+ * <p>
+ * Hits are appended while a text is analysed. Once handed out as part of an
+ * {@link EmotionalState} an instance is not modified any more.
+ */
+public class AffectWordHits
+{
+  /** Flag of hits whose valence is flipped because of a negation. */
+  public static final int NEGATED = 1;
+
+  /** Flag of emoticon hits on a word which only starts with the emoticon. */
+  public static final int STARTS_WITH_EMOTICON = 2;
+
+  /** The number of weights {@link #getWeights(int, double[])} computes. */
+  public static final int WEIGHT_COUNT = 7;
+
+  private Lexicon[] lexicons;
+
+  private int[] entries;
+
+  private double[] coefficients;
+
+  private byte[] flags;
+
+  private int size = 0;
+
+
+  /**
+   * Class constructor for an empty list of hits.
+   */
+  public AffectWordHits()
+  {
+    this(16);
+  }
+
+  /**
+   * Class constructor for an empty list of hits with the given initial
+   * capacity.
+   *
+   * @param capacity  the initial capacity
+   */
+  public AffectWordHits( int capacity )
+  {
+    lexicons = new Lexicon[capacity];
+    entries = new int[capacity];
+    coefficients = new double[capacity];
+    flags = new byte[capacity];
+  }
+
+
+  /**
+   * Records a hit.
+   *
+   * @param lexicon  the lexicon of the matched entry
+   * @param entry  the position of the entry in the lexicon
+   * @param coefficient  the coefficient the weights are adjusted by
+   * @param flags  a combination of {@link #NEGATED} and
+   *   {@link #STARTS_WITH_EMOTICON}
+   */
+  public void add( Lexicon lexicon, int entry, double coefficient, int flags )
+  {
+    ensureCapacity(size + 1);
+    lexicons[size] = lexicon;
+    entries[size] = entry;
+    coefficients[size] = coefficient;
+    this.flags[size] = (byte) flags;
+    size++;
+  }
+
+  /**
+   * Appends all hits of another instance.
+   *
+   * @param other  the hits to append
+   */
+  public void addAll( AffectWordHits other )
+  {
+    int n = other.size;
+    ensureCapacity(size + n);
+    System.arraycopy(other.lexicons, 0, lexicons, size, n);
+    System.arraycopy(other.entries, 0, entries, size, n);
+    System.arraycopy(other.coefficients, 0, coefficients, size, n);
+    System.arraycopy(other.flags, 0, flags, size, n);
+    size += n;
+  }
+
+  private void ensureCapacity( int minCapacity )
+  {
+    if (minCapacity > entries.length) {
+      int capacity = Math.max(Math.max(size * 2, 4), minCapacity);
+      lexicons = Arrays.copyOf(lexicons, capacity);
+      entries = Arrays.copyOf(entries, capacity);
+      coefficients = Arrays.copyOf(coefficients, capacity);
+      flags = Arrays.copyOf(flags, capacity);
+    }
+  }
+
+  /**
+   * Removes all hits.
+   */
+  public void clear()
+  {
+    Arrays.fill(lexicons, 0, size, null);
+    size = 0;
+  }
+
+  /**
+   * Returns the number of hits.
+   *
+   * @return the number of hits
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Returns the flags of a hit.
+   *
+   * @param i  the position of the hit
+   * @return  a combination of {@link #NEGATED} and
+   *   {@link #STARTS_WITH_EMOTICON}
+   */
+  public int getFlags( int i )
+  {
+    checkIndex(i);
+    return flags[i];
+  }
+
+  /**
+   * Computes the adjusted weights of a hit.
+   *
+   * @param i  the position of the hit
+   * @param weights  an array of at least {@value #WEIGHT_COUNT} elements,
+   *   which receives the general weight followed by the weights of the six
+   *   emotion types, ordered by their {@link Emotion} type constants
+   * @return  the valence of the hit
+   */
+  public double getWeights( int i, double[] weights )
+  {
+    checkIndex(i);
+    Lexicon lexicon = lexicons[i];
+    int entry = entries[i];
+    double coefficient = coefficients[i];
+    double happiness = lexicon.getWeight(entry, Emotion.HAPPINESS),
+      sadness = lexicon.getWeight(entry, Emotion.SADNESS),
+      anger = lexicon.getWeight(entry, Emotion.ANGER),
+      fear = lexicon.getWeight(entry, Emotion.FEAR),
+      disgust = lexicon.getWeight(entry, Emotion.DISGUST);
+    double valence = happiness - ((sadness + anger) + (fear + disgust));
+
+    if ((flags[i] & NEGATED) != 0) {
+      valence = -valence;
+      double temp = happiness;
+      happiness = Math.max(Math.max(sadness, anger), Math.max(fear, disgust));
+      sadness = temp;
+      temp /= 2;
+      anger = temp;
+      fear = temp;
+      disgust = temp;
+    }
+
+    weights[0] = Math.min(lexicon.getGeneralWeight(entry) * coefficient, 1);
+    weights[1 + Emotion.HAPPINESS] = Math.min(happiness * coefficient, 1);
+    weights[1 + Emotion.SADNESS] = Math.min(sadness * coefficient, 1);
+    weights[1 + Emotion.ANGER] = Math.min(anger * coefficient, 1);
+    weights[1 + Emotion.FEAR] = Math.min(fear * coefficient, 1);
+    weights[1 + Emotion.DISGUST] = Math.min(disgust * coefficient, 1);
+    weights[1 + Emotion.SURPRISE] =
+      Math.min(lexicon.getWeight(entry, Emotion.SURPRISE) * coefficient, 1);
+    return valence;
+  }
+
+  /**
+   * Materialises a hit as an {@link AffectWord} with adjusted weights.
+   *
+   * @param i  the position of the hit
+   * @return  a new {@link AffectWord} instance
+   */
+  public AffectWord getAffectWord( int i )
+  {
+    checkIndex(i);
+    AffectWord affectWord = lexicons[i].getAffectWord(entries[i]);
+    if ((flags[i] & NEGATED) != 0)
+      affectWord.flipValence();
+    affectWord.adjustWeights(coefficients[i]);
+    affectWord.setStartsWithEmoticon((flags[i] & STARTS_WITH_EMOTICON) != 0);
+    return affectWord;
+  }
+
+  /**
+   * Returns a read-only list view of the hits, which materialises each
+   * {@link AffectWord} when it is accessed.
+   *
+   * @return  the list of affect words
+   */
+  public List<AffectWord> asList()
+  {
+    return new ListView();
+  }
+
+  private void checkIndex( int i )
+  {
+    if (i < 0 || i >= size)
+      throw new IndexOutOfBoundsException(String.valueOf(i));
+  }
+
+
+  private class ListView extends AbstractList<AffectWord> implements RandomAccess
+  {
+    @Override
+    public AffectWord get( int index )
+    {
+      return getAffectWord(index);
+    }
+
+    @Override
+    public int size()
+    {
+      return size;
+    }
+  }
+}
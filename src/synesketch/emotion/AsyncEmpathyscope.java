@@ -0,0 +1,226 @@
+package synesketch.emotion;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+
+/**
+ * Non-blocking facade of an {@link Empathyscope}, which runs the analysis on
+ * an executor and returns its result as a {@link CompletableFuture}.
+ * <p>
+ * The number of analyses in flight (submitted, but neither finished nor
+ * cancelled before they started) is bounded. Once the bound is reached, further calls
+ * fail immediately with a {@link RejectedExecutionException}, so overload
+ * reaches the caller as back-pressure instead of a growing task queue.
+ * <p>
+ * Cancelling a returned future, or letting it time out, also cancels the
+ * analysis task if it hasn't started yet. An analysis can't be interrupted,
+ * so a started one runs to completion and counts as in flight until then.
+ */
+public class AsyncEmpathyscope implements AutoCloseable
+{
+  /** The default bound of analyses in flight. */
+  public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+  private final Empathyscope empathyscope;
+
+  private final ExecutorService executor;
+
+  private final boolean ownsExecutor;
+
+  private final Semaphore inFlight;
+
+  private final int maxInFlight;
+
+
+  /**
+   * Class constructor which runs the analysis on a new executor from
+   * {@link #newDefaultExecutor()}. The executor is shut down by
+   * {@link #close()}.
+   *
+   * @param empathyscope  the analyzer to use
+   */
+  public AsyncEmpathyscope( Empathyscope empathyscope )
+  {
+    this(empathyscope, newDefaultExecutor(), DEFAULT_MAX_IN_FLIGHT, true);
+  }
+
+  /**
+   * Class constructor which runs the analysis on the given executor. The
+   * executor is not shut down by {@link #close()}.
+   *
+   * @param empathyscope  the analyzer to use
+   * @param executor  the executor to run the analysis on
+   * @param maxInFlight  the maximum number of analyses in flight
+   */
+  public AsyncEmpathyscope( Empathyscope empathyscope, ExecutorService executor,
+    int maxInFlight )
+  {
+    this(empathyscope, executor, maxInFlight, false);
+  }
+
+  private AsyncEmpathyscope( Empathyscope empathyscope, ExecutorService executor,
+    int maxInFlight, boolean ownsExecutor )
+  {
+    if (maxInFlight <= 0)
+      throw new IllegalArgumentException("maxInFlight must be positive");
+    this.empathyscope = empathyscope;
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+    this.maxInFlight = maxInFlight;
+    inFlight = new Semaphore(maxInFlight);
+  }
+
+
+  /**
+   * Creates a fixed pool of daemon threads, one per available processor.
+   * <p>
+   * The analysis is CPU-bound, so more threads than processors wouldn't
+   * speed it up. Long-lived threads also keep the per-thread scratch buffers
+   * of {@link Empathyscope} (tokenizer, sentence iterator etc.), which a new
+   * thread per task would have to allocate on every call.
+   *
+   * @return  a new executor
+   */
+  public static ExecutorService newDefaultExecutor()
+  {
+    return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+      new ThreadFactory() {
+        private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread( Runnable r )
+        {
+          Thread t = defaultFactory.newThread(r);
+          t.setDaemon(true);
+          return t;
+        }
+      });
+  }
+
+
+  /**
+   * Analyses a text asynchronously.
+   *
+   * @param text  the text to be analysed
+   * @return  a future of the analysis result; it fails with a
+   *   {@link RejectedExecutionException} if too many analyses are in flight
+   */
+  public CompletableFuture<EmotionalState> feel( String text )
+  {
+    return feel(text, 0, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Analyses a text asynchronously with a time limit.
+   *
+   * @param text  the text to be analysed
+   * @param timeout  the time limit, or 0 for none
+   * @param unit  the unit of <code>timeout</code>
+   * @return  a future of the analysis result; it fails with a
+   *   {@link java.util.concurrent.TimeoutException} if the time limit is
+   *   exceeded, and with a {@link RejectedExecutionException} if too many
+   *   analyses are in flight
+   */
+  public CompletableFuture<EmotionalState> feel( final String text, long timeout,
+    TimeUnit unit )
+  {
+    final CompletableFuture<EmotionalState> result = new CompletableFuture<EmotionalState>();
+    if (!inFlight.tryAcquire()) {
+      result.completeExceptionally(new RejectedExecutionException(
+        "More than " + maxInFlight + " analyses in flight"));
+      return result;
+    }
+
+    // set by whoever releases the permit: the task when it starts, or the
+    // completion of the result if the task hasn't started yet
+    final AtomicBoolean claimed = new AtomicBoolean();
+    final Future<?> task;
+    try {
+      task = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call()
+        {
+          if (!claimed.compareAndSet(false, true))
+            return null;
+          try {
+            if (!result.isDone())
+              result.complete(empathyscope.feel(text));
+          } catch (Throwable ex) {
+            result.completeExceptionally(ex);
+          } finally {
+            inFlight.release();
+          }
+          return null;
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      inFlight.release();
+      result.completeExceptionally(ex);
+      return result;
+    }
+
+    result.whenComplete(new BiConsumer<EmotionalState, Throwable>() {
+      @Override
+      public void accept( EmotionalState state, Throwable ex )
+      {
+        if (ex != null && claimed.compareAndSet(false, true)) {
+          inFlight.release();
+          task.cancel(false);
+        }
+      }
+    });
+    return (timeout > 0) ? result.orTimeout(timeout, unit) : result;
+  }
+
+
+  /**
+   * Returns the number of analyses currently in flight.
+   *
+   * @return  the number of analyses in flight
+   */
+  public int getInFlight()
+  {
+    return maxInFlight - inFlight.availablePermits();
+  }
+
+  /**
+   * Returns the maximum number of analyses in flight.
+   *
+   * @return  the maximum number of analyses in flight
+   */
+  public int getMaxInFlight()
+  {
+    return maxInFlight;
+  }
+
+  /**
+   * Returns the underlying analyzer.
+   *
+   * @return  the analyzer
+   */
+  public Empathyscope getEmpathyscope()
+  {
+    return empathyscope;
+  }
+
+
+  /**
+   * Shuts down the executor if it was created by this instance.
+   */
+  @Override
+  public void close()
+  {
+    if (ownsExecutor)
+      executor.shutdown();
+  }
+}
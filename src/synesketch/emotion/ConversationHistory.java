@@ -0,0 +1,227 @@
+package synesketch.emotion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A thread-safe, bounded history of the {@link EmotionalState emotional
+ * states} of one conversation, linked to each other through
+ * {@link EmotionalState#getPrevious()}.
+ * <p>
+ * The states are kept in a ring buffer of fixed capacity. Optionally, states
+ * expire after a maximum age, and only their summaries (the weights and
+ * valence, without text and affect words; see
+ * {@link EmotionalState#toSummary()}) are retained. When the oldest state is
+ * evicted, the previous state of its successor is cleared, so that the
+ * <code>getPrevious</code> chain never reaches further back than the history
+ * and memory use stays flat however long the conversation lasts.
+ * <p>
+ * Every appended state is also merged into the {@link EmotionalMomentum} of
+ * the conversation, which isn't affected by evictions.
+ */
+public class ConversationHistory
+{
+  /** The capacity of histories created by {@link #ConversationHistory()}. */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private final EmotionalState[] states;
+
+  private final long[] timestamps;
+
+  private final long maxAgeNanos;
+
+  private final boolean summariesOnly;
+
+  private final EmotionalMomentum momentum;
+
+  private int head = 0, size = 0;
+
+
+  /**
+   * Class constructor for a history of {@value #DEFAULT_CAPACITY} states
+   * which don't expire.
+   */
+  public ConversationHistory()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Class constructor for a history of full states which don't expire.
+   *
+   * @param capacity  the maximum number of states
+   */
+  public ConversationHistory( int capacity )
+  {
+    this(capacity, 0, TimeUnit.NANOSECONDS, false);
+  }
+
+  /**
+   * Class constructor.
+   *
+   * @param capacity  the maximum number of states
+   * @param maxAge  the time after which states expire, or 0 if they don't
+   * @param unit  the unit of <code>maxAge</code>
+   * @param summariesOnly  whether only the summaries of the states are
+   *   retained
+   */
+  public ConversationHistory( int capacity, long maxAge, TimeUnit unit,
+    boolean summariesOnly )
+  {
+    this(capacity, maxAge, unit, summariesOnly, EmotionalMomentum.DEFAULT_HALF_LIFE);
+  }
+
+  /**
+   * Class constructor.
+   *
+   * @param capacity  the maximum number of states
+   * @param maxAge  the time after which states expire, or 0 if they don't
+   * @param unit  the unit of <code>maxAge</code>
+   * @param summariesOnly  whether only the summaries of the states are
+   *   retained
+   * @param momentumHalfLife  the half-life of the momentum, in states
+   */
+  public ConversationHistory( int capacity, long maxAge, TimeUnit unit,
+    boolean summariesOnly, double momentumHalfLife )
+  {
+    if (capacity <= 0 || maxAge < 0)
+      throw new IllegalArgumentException("History bounds must be positive");
+    states = new EmotionalState[capacity];
+    timestamps = new long[capacity];
+    maxAgeNanos = unit.toNanos(maxAge);
+    this.summariesOnly = summariesOnly;
+    momentum = new EmotionalMomentum(momentumHalfLife);
+  }
+
+
+  /**
+   * Appends a state to the history and links it to the latest state before
+   * it.
+   *
+   * @param state  the new state
+   * @return  <code>state</code>
+   */
+  public synchronized EmotionalState append( EmotionalState state )
+  {
+    long now = System.nanoTime();
+    expire(now);
+    if (size == states.length)
+      evictOldest();
+    EmotionalState latest = getLatest0();
+    state.setPrevious(latest);
+    EmotionalState retained = state;
+    if (summariesOnly) {
+      retained = state.toSummary();
+      retained.setPrevious(latest);
+    }
+
+    int i = (head + size) % states.length;
+    states[i] = retained;
+    timestamps[i] = now;
+    size++;
+    momentum.update(state);
+    return state;
+  }
+
+  /**
+   * Returns the latest retained state.
+   *
+   * @return  the latest {@link EmotionalState} (or its summary), or
+   *   <code>null</code> if the history is empty
+   */
+  public synchronized EmotionalState getLatest()
+  {
+    expire(System.nanoTime());
+    return getLatest0();
+  }
+
+  /**
+   * Returns the retained states.
+   *
+   * @return  a new list of the states (or their summaries), oldest first
+   */
+  public synchronized List<EmotionalState> getStates()
+  {
+    expire(System.nanoTime());
+    List<EmotionalState> value = new ArrayList<EmotionalState>(size);
+    for (int i = 0; i < size; i++)
+      value.add(states[(head + i) % states.length]);
+    return value;
+  }
+
+  /**
+   * Returns the number of retained states.
+   *
+   * @return  the number of states
+   */
+  public synchronized int size()
+  {
+    expire(System.nanoTime());
+    return size;
+  }
+
+  /**
+   * Returns the total length of the texts of the retained states, e.g. to
+   * estimate the memory they take up.
+   *
+   * @return  the number of characters
+   */
+  public synchronized long getTextLength()
+  {
+    expire(System.nanoTime());
+    long value = 0;
+    for (int i = 0; i < size; i++)
+      value += states[(head + i) % states.length].getText().length();
+    return value;
+  }
+
+  /**
+   * Returns the smoothed mood of the conversation.
+   *
+   * @return  {@link EmotionalMomentum}
+   */
+  public EmotionalMomentum getMomentum()
+  {
+    return momentum;
+  }
+
+  public int getCapacity()
+  {
+    return states.length;
+  }
+
+  /**
+   * Removes all states and resets the momentum.
+   */
+  public synchronized void clear()
+  {
+    while (size > 0)
+      evictOldest();
+    momentum.clear();
+  }
+
+
+  private EmotionalState getLatest0()
+  {
+    return (size > 0) ? states[(head + size - 1) % states.length] : null;
+  }
+
+  private void expire( long now )
+  {
+    if (maxAgeNanos > 0) {
+      while (size > 0 && now - timestamps[head] > maxAgeNanos)
+        evictOldest();
+    }
+  }
+
+  private void evictOldest()
+  {
+    states[head] = null;
+    head = (head + 1) % states.length;
+    size--;
+    if (size > 0)
+      states[head].setPrevious(null);
+  }
+}
@@ -0,0 +1,153 @@
+package synesketch.emotion;
+
+
+/**
+ * The smoothed mood of a conversation: an exponentially weighted moving
+ * average of the emotional weights and the valence of its states.
+ * <p>
+ * Each new state is merged in constant time and memory, so that the mood can
+ * be read without walking the {@link EmotionalState#getPrevious()} chain. The
+ * influence of a state halves after a configurable number of later states
+ * (the half-life). The first state is taken as it is. Instances are
+ * thread-safe.
+ */
+public class EmotionalMomentum
+{
+  /** The half-life of instances created by {@link #EmotionalMomentum()}. */
+  public static final double DEFAULT_HALF_LIFE = 8;
+
+  private final double halfLife;
+
+  /** The weight of a new state. */
+  private final double alpha;
+
+  private final double[] weights = new double[EmotionalState.EMOTION_TYPE_COUNT];
+
+  private double generalWeight = 0, valence = 0;
+
+  private long count = 0;
+
+
+  /**
+   * Class constructor with a half-life of {@value #DEFAULT_HALF_LIFE}
+   * states.
+   */
+  public EmotionalMomentum()
+  {
+    this(DEFAULT_HALF_LIFE);
+  }
+
+  /**
+   * Class constructor.
+   *
+   * @param halfLife  the number of states after which the influence of a
+   *   state halves
+   */
+  public EmotionalMomentum( double halfLife )
+  {
+    if (!(halfLife > 0))
+      throw new IllegalArgumentException("Half-life must be positive");
+    this.halfLife = halfLife;
+    alpha = 1 - Math.pow(0.5, 1 / halfLife);
+  }
+
+
+  /**
+   * Merges a new state into the average.
+   *
+   * @param state  the new state
+   */
+  public synchronized void update( EmotionalState state )
+  {
+    double a = (count == 0) ? 1 : alpha;
+    for (int i = 0; i < weights.length; i++)
+      weights[i] += a * (state.getWeight(i - 1) - weights[i]);
+    generalWeight += a * (state.getGeneralWeight() - generalWeight);
+    valence += a * (state.getValence() - valence);
+    count++;
+  }
+
+  /**
+   * Resets the average, as if no state had been merged.
+   */
+  public synchronized void clear()
+  {
+    for (int i = 0; i < weights.length; i++)
+      weights[i] = 0;
+    generalWeight = 0;
+    valence = 0;
+    count = 0;
+  }
+
+
+  public double getHalfLife()
+  {
+    return halfLife;
+  }
+
+  /**
+   * Returns the number of states merged so far.
+   *
+   * @return  the number of states
+   */
+  public synchronized long getCount()
+  {
+    return count;
+  }
+
+  /**
+   * Returns the average weight of an emotion type.
+   *
+   * @param type  emotion type (integer constant defined by the
+   *   {@link Emotion} class)
+   * @return  the average weight
+   */
+  public synchronized double getWeight( int type )
+  {
+    return weights[1 + type];
+  }
+
+  /**
+   * Returns the average general emotional weight.
+   *
+   * @return  the average general weight
+   */
+  public synchronized double getGeneralWeight()
+  {
+    return generalWeight;
+  }
+
+  /**
+   * Returns the average valence.
+   *
+   * @return  the average valence, between -1 and 1
+   */
+  public synchronized double getValence()
+  {
+    return valence;
+  }
+
+  /**
+   * Returns the smoothed mood as an {@link EmotionalState}, e.g. to be
+   * rendered by a sketch. It has the average weights, the sign of the
+   * average valence, an empty text and no affect words.
+   *
+   * @return  a new {@link EmotionalState}
+   */
+  public synchronized EmotionalState getMood()
+  {
+    return new EmotionalState("", weights, null, generalWeight,
+      (int) Math.signum(valence));
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return String.format(
+      "Valence: %f%nGeneral weight: %f%nHappiness weight: %f%nSadness weight: %f%nAnger weight: %f%nFear weight: %f%nDisgust weight: %f%nSurprise weight: %f%n",
+      valence, generalWeight,
+      weights[1 + Emotion.HAPPINESS], weights[1 + Emotion.SADNESS],
+      weights[1 + Emotion.ANGER], weights[1 + Emotion.FEAR],
+      weights[1 + Emotion.DISGUST], weights[1 + Emotion.SURPRISE]);
+  }
+}
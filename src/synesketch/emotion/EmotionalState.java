@@ -48,16 +48,37 @@
  */
 public class EmotionalState extends SynesketchState
 {
+	/**
+	 * The number of emotion types, including {@link Emotion#NEUTRAL}, and the
+	 * length of the weight arrays passed to
+	 * {@link #EmotionalState(String, double[], AffectWordHits, double, int)}.
+	 */
+	public static final int EMOTION_TYPE_COUNT = 7;
+
 	private double generalWeight = 0.0;
 
 	private int valence = 0;
 
 	private EmotionalState previous;
 
-	private SortedSet<Emotion> emotions;
+	/** The order in which emotions are added to the ranking. */
+	private static final int[] RANK_ORDER = {
+		Emotion.HAPPINESS, Emotion.SADNESS, Emotion.ANGER, Emotion.FEAR,
+		Emotion.DISGUST, Emotion.SURPRISE, Emotion.NEUTRAL
+	};
+
+	/** The weight of each emotion type <code>t</code> at <code>t + 1</code>. */
+	private final double[] weights = new double[EMOTION_TYPE_COUNT];
+
+	/** The types of the emotions of this state, strongest first. */
+	private volatile int[] ranking;
+
+	private volatile Emotion[] emotions;
 
 	private List<AffectWord> affectWords;
 
+	private AffectWordHits affectWordHits;
+
 
 	/**
 	 * Empty class constructor
@@ -75,8 +96,8 @@ public EmotionalState() {
 	 */
 	public EmotionalState(String text) {
 		super(text);
-		emotions = new TreeSet<Emotion>();
-		emotions.add(new Emotion(1.0, Emotion.NEUTRAL));
+		weights[1 + Emotion.NEUTRAL] = 1.0;
+		ranking = new int[] { Emotion.NEUTRAL };
 	}
 
 
@@ -100,8 +121,106 @@ public EmotionalState(String text, SortedSet<Emotion> emotions,
 		super(text);
 		this.generalWeight = generalWeight;
 		this.valence = valence;
-		this.emotions = emotions;
 		this.affectWords = affectWords;
+		int[] ranking = new int[emotions.size()];
+		int count = 0;
+		for (Emotion e : emotions) {
+			int type = e.getType();
+			if (!contains(ranking, count, type)) {
+				weights[1 + type] = e.getWeight();
+				ranking[count++] = type;
+			}
+		}
+		this.ranking = Arrays.copyOf(ranking, count);
+	}
+
+
+	/**
+	 * Class constuctor which sets the text, general emotional weight, emotional
+	 * valence, and all of the emotional weights (in a form of an array). The
+	 * emotions of this state are those with a positive weight; they are ranked
+	 * when they are first asked for.
+	 * 
+	 * @param text
+	 *            {@link String} representing the text
+	 * @param weights
+	 *            array of {@value #EMOTION_TYPE_COUNT} doubles containing the
+	 *            weight of each emotion type <code>t</code> (as defined by the
+	 *            {@link Emotion} class) at <code>t + 1</code>
+	 * @param affectWordHits
+	 *            {@link AffectWordHits} representing the affect words found in
+	 *            the text
+	 * @param generalWeight
+	 *            double representing the general emotional weight
+	 * @param valence
+	 *            int representing the emotinal valence
+	 */
+	public EmotionalState(String text, double[] weights,
+		AffectWordHits affectWordHits, double generalWeight, int valence)
+	{
+		super(text);
+		this.generalWeight = generalWeight;
+		this.valence = valence;
+		this.affectWordHits = affectWordHits;
+		System.arraycopy(weights, 0, this.weights, 0, EMOTION_TYPE_COUNT);
+	}
+
+
+	/**
+	 * Class constuctor which sets the text, general emotional weight, emotional
+	 * valence, and all of the emotional weights (in a form of a SortedSet).
+	 * The affect words are materialised from the given hits when they are
+	 * first asked for.
+	 * 
+	 * @param text
+	 *            {@link String} representing the text
+	 * @param emotions
+	 *            {@link SortedSet} containing all of the specific Ekman emotinal
+	 *            weights, defined by the {@link Emotion} class
+	 * @param affectWordHits
+	 *            {@link AffectWordHits} representing the affect words found in
+	 *            the text
+	 * @param generalWeight
+	 *            double representing the general emotional weight
+	 * @param valence
+	 *            int representing the emotinal valence
+	 */
+	public EmotionalState(String text, SortedSet<Emotion> emotions,
+		AffectWordHits affectWordHits, double generalWeight, int valence)
+	{
+		this(text, emotions, (List<AffectWord>) null, generalWeight, valence);
+		this.affectWordHits = affectWordHits;
+	}
+
+
+	/**
+	 * Returns a copy of this state without its previous state. The emotions
+	 * are copied, so that changes to either state don't affect the other; the
+	 * affect words are shared.
+	 *
+	 * @return a new {@link EmotionalState}
+	 */
+	public EmotionalState copy() {
+		EmotionalState value = new EmotionalState(text, weights,
+			affectWordHits, generalWeight, valence);
+		value.affectWords = affectWords;
+		value.ranking = ranking;
+		return value;
+	}
+
+
+	/**
+	 * Returns a summary of this state without its previous state: a state
+	 * with the same weights and valence, but with an empty text and without
+	 * affect words.
+	 *
+	 * @return a new {@link EmotionalState}
+	 */
+	public EmotionalState toSummary() {
+		EmotionalState value = new EmotionalState("", weights, null,
+			generalWeight, valence);
+		value.ranking = ranking;
+		return value;
 	}
 
 
@@ -112,7 +231,10 @@ public EmotionalState(String text, SortedSet<Emotion> emotions,
 	 */
 
 	public Emotion getStrongestEmotion() {
-		return emotions.first();
+		int[] ranking = getRanking();
+		if (ranking.length == 0)
+			throw new NoSuchElementException();
+		return getEmotions()[1 + ranking[0]];
 	}
 
 
@@ -127,14 +249,12 @@ public Emotion getStrongestEmotion() {
 	 *         weight
 	 */
 	public List<Emotion> getFirstStrongestEmotions(int stop) {
-		List<Emotion> value = new ArrayList<Emotion>(Math.min(emotions.size(), stop));
-		for (Emotion e : emotions) {
-			if (stop <= 0) {
-				break;
-			}
-			value.add(e);
-			stop--;
-		}
+		int[] ranking = getRanking();
+		Emotion[] emotions = getEmotions();
+		int count = Math.max(Math.min(ranking.length, stop), 0);
+		List<Emotion> value = new ArrayList<Emotion>(count);
+		for (int i = 0; i < count; i++)
+			value.add(emotions[1 + ranking[i]]);
 		return value;
 	}
 
@@ -154,7 +274,7 @@ public Emotion getHappiness() {
 	 * @return double representing the happiness weight
 	 */
 	public double getHappinessWeight() {
-		return getHappiness().getWeight();
+		return weights[1 + Emotion.HAPPINESS];
 	}
 
 
@@ -173,7 +293,7 @@ public Emotion getSadness() {
 	 * @return double representing the sadness weight
 	 */
 	public double getSadnessWeight() {
-		return getSadness().getWeight();
+		return weights[1 + Emotion.SADNESS];
 	}
 
 
@@ -192,7 +312,7 @@ public Emotion getFear() {
 	 * @return double representing the fear weight
 	 */
 	public double getFearWeight() {
-		return getFear().getWeight();
+		return weights[1 + Emotion.FEAR];
 	}
 
 
@@ -211,7 +331,7 @@ public Emotion getAnger() {
 	 * @return double representing the anger weight
 	 */
 	public double getAngerWeight() {
-		return getAnger().getWeight();
+		return weights[1 + Emotion.ANGER];
 	}
 
 
@@ -230,7 +350,7 @@ public Emotion getDisgust() {
 	 * @return double representing the disgust weight
 	 */
 	public double getDisgustWeight() {
-		return getDisgust().getWeight();
+		return weights[1 + Emotion.DISGUST];
 	}
 
 
@@ -249,7 +369,7 @@ public Emotion getSurprise() {
 	 * @return double representing the surprise weight
 	 */
 	public double getSurpriseWeight() {
-		return getSurprise().getWeight();
+		return weights[1 + Emotion.SURPRISE];
 	}
 
 
@@ -293,22 +413,109 @@ public double getGeneralWeight() {
 	}
 
 
+	/**
+	 * Getter for the {@link Emotion} of a type. Emotions are created once per
+	 * state; changing them doesn't change the weights of the state.
+	 * 
+	 * @param type
+	 *            emotion type (integer constant defined by the {@link Emotion}
+	 *            class)
+	 * @return {@link Emotion} of the type, with weight 0 if this state doesn't
+	 *         have it
+	 */
 	public Emotion getEmotion(int type)
 	{
-		for (Emotion e: emotions) {
-			if (e.getType() == type)
-				return e;
+		return getEmotions()[1 + type];
+	}
+
+
+	/**
+	 * Getter for the weight of an emotion type.
+	 * 
+	 * @param type
+	 *            emotion type (integer constant defined by the {@link Emotion}
+	 *            class)
+	 * @return double representing the weight, 0 if this state doesn't have
+	 *         the emotion
+	 */
+	public double getWeight(int type)
+	{
+		return weights[1 + type];
+	}
+
+
+	private Emotion[] getEmotions()
+	{
+		Emotion[] value = emotions;
+		if (value == null) {
+			value = new Emotion[EMOTION_TYPE_COUNT];
+			for (int i = 0; i < value.length; i++)
+				value[i] = new Emotion(weights[i], i - 1);
+			emotions = value;
+		}
+		return value;
+	}
+
+
+	/**
+	 * Ranks the emotions with a positive weight by decreasing weight. The
+	 * {@link Emotion#compareTo(Emotion) comparison} of emotions counts weights
+	 * which differ by less than 0.01 as equal, which isn't transitive, so the
+	 * ranking is that of a {@link TreeSet} filled in the order happiness,
+	 * sadness, anger, fear, disgust, surprise, neutral. It is built once, on
+	 * first access.
+	 */
+	private int[] getRanking()
+	{
+		int[] value = ranking;
+		if (value == null) {
+			TreeSet<Emotion> emotions = new TreeSet<Emotion>();
+			for (int type : RANK_ORDER) {
+				double weight = weights[1 + type];
+				if (weight > 0)
+					emotions.add(new Emotion(weight, type));
+			}
+			value = new int[emotions.size()];
+			int i = 0;
+			for (Emotion e : emotions)
+				value[i++] = e.getType();
+			ranking = value;
+		}
+		return value;
+	}
+
+
+	private static boolean contains(int[] array, int count, int value)
+	{
+		for (int i = 0; i < count; i++) {
+			if (array[i] == value)
+				return true;
 		}
-		return new Emotion(0, type);
+		return false;
 	}
 
 
 	public List<AffectWord> getAffectWords()
 	{
+		if (affectWords == null && affectWordHits != null)
+			affectWords = new ArrayList<AffectWord>(affectWordHits.asList());
 		return affectWords;
 	}
 
 
+	/**
+	 * Getter for the affect words found in the text, without materialising
+	 * them as {@link AffectWord} instances.
+	 * 
+	 * @return {@link AffectWordHits} or <code>null</code> if this state wasn't
+	 *         created from hits
+	 */
+	public AffectWordHits getAffectWordHits()
+	{
+		return affectWordHits;
+	}
+
+
 	/**
 	 * Transforms emotional data into a descriptional sentence ('toString'
 	 * method)
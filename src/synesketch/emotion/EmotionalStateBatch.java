@@ -0,0 +1,89 @@
+package synesketch.emotion;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * The results of a batch analysis with
+ * {@link Empathyscope#feelAll(java.util.Collection)}, in input order, along
+ * with throughput figures.
+ */
+public class EmotionalStateBatch
+{
+  private final List<EmotionalState> states;
+
+  private final long elapsedNanos;
+
+  private final long charCount;
+
+
+  EmotionalStateBatch( EmotionalState[] states, String[] texts, long elapsedNanos )
+  {
+    this.states = Collections.unmodifiableList(Arrays.asList(states));
+    this.elapsedNanos = elapsedNanos;
+    long charCount = 0;
+    for (String text: texts)
+      charCount += text.length();
+    this.charCount = charCount;
+  }
+
+
+  /**
+   * Returns the analysis results in the order of the input texts.
+   *
+   * @return  the list of emotional states
+   */
+  public List<EmotionalState> getStates()
+  {
+    return states;
+  }
+
+  /**
+   * Returns the number of analysed texts.
+   *
+   * @return  the number of texts
+   */
+  public int size()
+  {
+    return states.size();
+  }
+
+  /**
+   * Returns the wall-clock time the batch analysis took.
+   *
+   * @return  the elapsed time in nanoseconds
+   */
+  public long getElapsedNanos()
+  {
+    return elapsedNanos;
+  }
+
+  /**
+   * Returns the number of texts analysed per second.
+   *
+   * @return  the throughput in texts per second
+   */
+  public double getTextsPerSecond()
+  {
+    return (elapsedNanos > 0) ? states.size() * 1e9 / elapsedNanos : 0;
+  }
+
+  /**
+   * Returns the number of characters analysed per second.
+   *
+   * @return  the throughput in characters per second
+   */
+  public double getCharsPerSecond()
+  {
+    return (elapsedNanos > 0) ? charCount * 1e9 / elapsedNanos : 0;
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("%d texts in %.3f ms (%.1f texts/s, %.1f chars/s)",
+      states.size(), elapsedNanos / 1e6, getTextsPerSecond(), getCharsPerSecond());
+  }
+}
@@ -0,0 +1,369 @@
+package synesketch.emotion;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A compact binary format for {@link EmotionalState} results, e.g. to store
+ * them in files or send them over sockets.
+ * <p>
+ * Every state is written as a record of fixed size: the weights of the seven
+ * emotion types (neutral, happiness, sadness, fear, anger, disgust, surprise),
+ * the general weight, the valence as a signed byte and, optionally, a
+ * reference to the text as an int (e.g. a row or message id supplied by the
+ * caller). Neither the text itself nor the affect words are written. Weights
+ * are stored as doubles, or quantised to 16 or 8 bits (see
+ * {@link Precision}).
+ * <p>
+ * A batch (see {@link #encodeAll(List, int[], ByteBuffer)}) is a header of
+ * {@value #HEADER_SIZE} bytes -- magic number, format version, precision,
+ * flags, padding --, the record count as an int and the records. The header
+ * can also be used to frame a stream of records written one by one with
+ * {@link #encode(EmotionalState, int, ByteBuffer)}. Single records can be
+ * read in place with the absolute getters, without creating any objects.
+ * <p>
+ * All data is big-endian, which is the default byte order of
+ * {@link ByteBuffer}; buffers of another byte order are rejected. Instances
+ * are immutable and may be shared between threads.
+ */
+public class EmotionalStateCodec
+{
+  static final int MAGIC = 0x53594E45; // "SYNE"
+
+  static final int VERSION = 1;
+
+  /** The size of the header written by {@link #writeHeader(ByteBuffer)}. */
+  public static final int HEADER_SIZE = 12;
+
+  private static final int FLAG_TEXT_REFERENCE = 1;
+
+  /** The number of weights in a record: seven emotion types and the general weight. */
+  private static final int WEIGHT_COUNT = EmotionalState.EMOTION_TYPE_COUNT + 1;
+
+
+  /**
+   * The precision the weights of a record are stored with.
+   */
+  public enum Precision
+  {
+    /** Weights are stored as doubles, without loss. */
+    DOUBLE(8),
+
+    /** Weights between 0 and 1 are quantised to 16 bits. */
+    SHORT(2),
+
+    /** Weights between 0 and 1 are quantised to 8 bits. */
+    BYTE(1);
+
+    private final int size;
+
+    Precision( int size )
+    {
+      this.size = size;
+    }
+
+    /**
+     * Returns the size of one weight.
+     *
+     * @return  the size in bytes
+     */
+    public int getSize()
+    {
+      return size;
+    }
+  }
+
+
+  private final Precision precision;
+
+  private final boolean textReference;
+
+  private final int recordSize;
+
+
+  /**
+   * Class constructor.
+   *
+   * @param precision  the precision of the weights
+   * @param textReference  whether records include a reference to their text
+   */
+  public EmotionalStateCodec( Precision precision, boolean textReference )
+  {
+    this.precision = precision;
+    this.textReference = textReference;
+    recordSize = WEIGHT_COUNT * precision.getSize() + 1 + (textReference ? 4 : 0);
+  }
+
+
+  public Precision getPrecision()
+  {
+    return precision;
+  }
+
+  public boolean hasTextReference()
+  {
+    return textReference;
+  }
+
+  /**
+   * Returns the size of every record written by this codec.
+   *
+   * @return  the record size in bytes
+   */
+  public int getRecordSize()
+  {
+    return recordSize;
+  }
+
+
+  /**
+   * Writes the header which identifies the format and the settings of this
+   * codec.
+   *
+   * @param out  the buffer to write to
+   */
+  public void writeHeader( ByteBuffer out )
+  {
+    checkOrder(out);
+    out.putInt(MAGIC);
+    out.putShort((short) VERSION);
+    out.put((byte) precision.ordinal());
+    out.put((byte) (textReference ? FLAG_TEXT_REFERENCE : 0));
+    out.putInt(0);
+  }
+
+  /**
+   * Reads a header and returns a codec with the settings it describes.
+   *
+   * @param in  the buffer to read from
+   * @return  a new {@link EmotionalStateCodec}
+   * @throws IOException  if the buffer doesn't start with a valid header
+   */
+  public static EmotionalStateCodec readHeader( ByteBuffer in ) throws IOException
+  {
+    checkOrder(in);
+    if (in.remaining() < HEADER_SIZE || in.getInt(in.position()) != MAGIC)
+      throw new IOException("Not an emotional state record header");
+    int version = in.getShort(in.position() + 4);
+    if (version != VERSION)
+      throw new IOException("Unsupported emotional state record version: " + version);
+    int precision = in.get(in.position() + 6);
+    if (precision < 0 || precision >= Precision.values().length)
+      throw new IOException("Unsupported emotional state record precision: " + precision);
+    int flags = in.get(in.position() + 7);
+    in.position(in.position() + HEADER_SIZE);
+    return new EmotionalStateCodec(Precision.values()[precision],
+      (flags & FLAG_TEXT_REFERENCE) != 0);
+  }
+
+
+  /**
+   * Writes the record of a state.
+   *
+   * @param state  the state to write
+   * @param textReference  the reference to the text of the state, which is
+   *   ignored if this codec doesn't write text references
+   * @param out  the buffer to write to
+   * @throws BufferOverflowException  if there are fewer than
+   *   {@link #getRecordSize()} bytes remaining
+   */
+  public void encode( EmotionalState state, int textReference, ByteBuffer out )
+  {
+    checkOrder(out);
+    if (out.remaining() < recordSize)
+      throw new BufferOverflowException();
+    for (int type = Emotion.NEUTRAL; type <= Emotion.SURPRISE; type++)
+      putWeight(out, state.getWeight(type));
+    putWeight(out, state.getGeneralWeight());
+    out.put((byte) Integer.signum(state.getValence()));
+    if (this.textReference)
+      out.putInt(textReference);
+  }
+
+  /**
+   * Writes a batch of states: a header, the number of states and their
+   * records.
+   *
+   * @param states  the states to write
+   * @param textReferences  the references to the texts of the states in the
+   *   same order, or <code>null</code> to write the position of each state
+   *   in the list; ignored if this codec doesn't write text references
+   * @param out  the buffer to write to
+   * @throws BufferOverflowException  if the buffer is too small
+   */
+  public void encodeAll( List<EmotionalState> states, int[] textReferences,
+    ByteBuffer out )
+  {
+    checkOrder(out);
+    int size = states.size();
+    if (out.remaining() < HEADER_SIZE + 4 + (long) size * recordSize)
+      throw new BufferOverflowException();
+    writeHeader(out);
+    out.putInt(size);
+    for (int i = 0; i < size; i++)
+      encode(states.get(i), (textReferences != null) ? textReferences[i] : i, out);
+  }
+
+
+  /**
+   * Reads the record of a state. The state has an empty text and no affect
+   * words; the text reference can be read with
+   * {@link #getTextReference(ByteBuffer, int)} before.
+   *
+   * @param in  the buffer to read from
+   * @return  a new {@link EmotionalState}
+   * @throws BufferUnderflowException  if there are fewer than
+   *   {@link #getRecordSize()} bytes remaining
+   */
+  public EmotionalState decode( ByteBuffer in )
+  {
+    checkOrder(in);
+    if (in.remaining() < recordSize)
+      throw new BufferUnderflowException();
+    double[] weights = new double[EmotionalState.EMOTION_TYPE_COUNT];
+    for (int i = 0; i < weights.length; i++)
+      weights[i] = readWeight(in, in.position(), i);
+    EmotionalState state = new EmotionalState("", weights, null,
+      readWeight(in, in.position(), weights.length), in.get(in.position() + valenceOffset()));
+    in.position(in.position() + recordSize);
+    return state;
+  }
+
+  /**
+   * Reads a batch of states written by
+   * {@link #encodeAll(List, int[], ByteBuffer)}.
+   *
+   * @param in  the buffer to read from
+   * @return  the list of states
+   * @throws IOException  if the buffer doesn't contain a valid batch
+   */
+  public static List<EmotionalState> decodeAll( ByteBuffer in ) throws IOException
+  {
+    EmotionalStateCodec codec = readHeader(in);
+    int size = (in.remaining() >= 4) ? in.getInt() : -1;
+    if (size < 0 || in.remaining() < (long) size * codec.recordSize)
+      throw new IOException("Truncated or corrupt emotional state batch");
+    List<EmotionalState> states = new ArrayList<EmotionalState>(size);
+    for (int i = 0; i < size; i++)
+      states.add(codec.decode(in));
+    return states;
+  }
+
+
+  /**
+   * Reads the weight of an emotion type from a record in place.
+   *
+   * @param in  the buffer of records
+   * @param record  the index of the record, counted from the position of the
+   *   buffer
+   * @param type  the emotion type (integer constant defined by the
+   *   {@link Emotion} class)
+   * @return  the weight
+   */
+  public double getWeight( ByteBuffer in, int record, int type )
+  {
+    return readWeight(in, recordOffset(in, record), 1 + type);
+  }
+
+  /**
+   * Reads the general weight from a record in place.
+   *
+   * @param in  the buffer of records
+   * @param record  the index of the record, counted from the position of the
+   *   buffer
+   * @return  the general weight
+   */
+  public double getGeneralWeight( ByteBuffer in, int record )
+  {
+    return readWeight(in, recordOffset(in, record), WEIGHT_COUNT - 1);
+  }
+
+  /**
+   * Reads the valence from a record in place.
+   *
+   * @param in  the buffer of records
+   * @param record  the index of the record, counted from the position of the
+   *   buffer
+   * @return  the valence
+   */
+  public int getValence( ByteBuffer in, int record )
+  {
+    return in.get(recordOffset(in, record) + valenceOffset());
+  }
+
+  /**
+   * Reads the text reference from a record in place.
+   *
+   * @param in  the buffer of records
+   * @param record  the index of the record, counted from the position of the
+   *   buffer
+   * @return  the text reference
+   * @throws IllegalStateException  if this codec doesn't write text
+   *   references
+   */
+  public int getTextReference( ByteBuffer in, int record )
+  {
+    if (!textReference)
+      throw new IllegalStateException("Records have no text references");
+    return in.getInt(recordOffset(in, record) + valenceOffset() + 1);
+  }
+
+
+  private void putWeight( ByteBuffer out, double weight )
+  {
+    switch (precision) {
+    case DOUBLE:
+      out.putDouble(weight);
+      break;
+    case SHORT:
+      out.putShort((short) Math.round(clamp(weight) * 0xffff));
+      break;
+    case BYTE:
+      out.put((byte) Math.round(clamp(weight) * 0xff));
+      break;
+    }
+  }
+
+  private double readWeight( ByteBuffer in, int offset, int column )
+  {
+    int i = offset + column * precision.getSize();
+    switch (precision) {
+    case SHORT:
+      return (in.getShort(i) & 0xffff) / (double) 0xffff;
+    case BYTE:
+      return (in.get(i) & 0xff) / (double) 0xff;
+    default:
+      return in.getDouble(i);
+    }
+  }
+
+  private int recordOffset( ByteBuffer in, int record )
+  {
+    checkOrder(in);
+    if (record < 0 || in.remaining() / recordSize <= record)
+      throw new IndexOutOfBoundsException(String.valueOf(record));
+    return in.position() + record * recordSize;
+  }
+
+  private int valenceOffset()
+  {
+    return WEIGHT_COUNT * precision.getSize();
+  }
+
+  private static double clamp( double weight )
+  {
+    return Math.max(0, Math.min(weight, 1));
+  }
+
+  private static void checkOrder( ByteBuffer buffer )
+  {
+    if (buffer.order() != ByteOrder.BIG_ENDIAN)
+      throw new IllegalArgumentException("Buffer isn't big-endian");
+  }
+}
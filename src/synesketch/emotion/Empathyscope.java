@@ -19,14 +19,30 @@
 package synesketch.emotion;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.TreeSet;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 
 import synesketch.emotion.util.HeuristicsUtility;
+import synesketch.emotion.util.Lexicon;
 import synesketch.emotion.util.LexicalUtility;
-import synesketch.emotion.util.ParsingUtility;
+import synesketch.emotion.util.SentenceFeatures;
+import synesketch.emotion.util.TextSpan;
+import synesketch.emotion.util.Tokenizer;
+import synesketch.util.LruCache;
+import synesketch.util.PropertiesManager;
 
 /**
  * Defines logic for transfering textual affect information -- emotional
@@ -37,29 +53,159 @@
  */
 public class Empathyscope {
 
-	private static Empathyscope instance;
+	private static volatile Empathyscope instance;
 
-	private LexicalUtility lexUtil;
+	/** The number of characters read at once by {@link #feel(Reader)}. */
+	private static final int STREAM_CHUNK_SIZE = 8192;
 
-	private Empathyscope() throws IOException {
-		lexUtil = LexicalUtility.getInstance();
+	/**
+	 * The length at which {@link #feel(Reader)} scores an unfinished sentence
+	 * as it is instead of waiting for its end.
+	 */
+	private static final int MAX_PENDING_SENTENCE = 1 << 16;
+
+	private final LexicalUtility lexUtil;
+
+	private final LruCache<String, EmotionalState> cache;
+
+	private final LruCache<String, SentenceScore> sentenceCache;
+
+	private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch(lexUtil);
+		}
+	};
+
+	/**
+	 * Class constructor which sets the lexical resources used for the
+	 * analysis. Instances are immutable and {@link #feel(String)} may be called
+	 * from any number of threads concurrently.
+	 * 
+	 * @param lexUtil
+	 *            {@link LexicalUtility} with the lexicons and keywords
+	 */
+	public Empathyscope(LexicalUtility lexUtil) {
+		this(lexUtil, null);
 	}
 
 	/**
-	 * Returns the Singleton instance of the {@link Empathyscope}.
+	 * Class constructor which sets the lexical resources used for the
+	 * analysis and a cache of analysis results. Repeated texts are answered
+	 * from the cache with a copy of the cached {@link EmotionalState}, so that
+	 * callers may change the returned state (e.g. with
+	 * {@link EmotionalState#setPrevious(EmotionalState)}) freely.
+	 * 
+	 * @param lexUtil
+	 *            {@link LexicalUtility} with the lexicons and keywords
+	 * @param cache
+	 *            {@link LruCache} of analysis results keyed by text, or
+	 *            <code>null</code> to analyse every text
+	 * @see #newResultCache(int, long)
+	 */
+	public Empathyscope(LexicalUtility lexUtil,
+			LruCache<String, EmotionalState> cache) {
+		this(lexUtil, cache, null);
+	}
+
+	private Empathyscope(LexicalUtility lexUtil,
+			LruCache<String, EmotionalState> cache,
+			LruCache<String, SentenceScore> sentenceCache) {
+		this.lexUtil = lexUtil;
+		this.cache = cache;
+		this.sentenceCache = sentenceCache;
+	}
+
+	/**
+	 * Creates a cache of analysis results, which is bounded by the number of
+	 * texts and by their total length.
+	 * 
+	 * @param maxEntries
+	 *            the maximum number of cached texts
+	 * @param maxChars
+	 *            the maximum total length of the cached texts
+	 * @return a new {@link LruCache}
+	 * @throws IllegalArgumentException
+	 *             if a bound isn't positive
+	 */
+	public static LruCache<String, EmotionalState> newResultCache(
+			int maxEntries, long maxChars) {
+		return newTextCache(maxEntries, maxChars);
+	}
+
+	private static <V> LruCache<String, V> newTextCache(int maxEntries,
+			long maxChars) {
+		return new LruCache<String, V>(maxEntries, maxChars,
+				new LruCache.Weigher<String, Object>() {
+					@Override
+					public long weigh(String text, Object value) {
+						return Math.max(text.length(), 1);
+					}
+				});
+	}
+
+	/**
+	 * Returns the Singleton instance of the {@link Empathyscope}, which uses
+	 * the standard lexicons and keywords.
 	 * 
 	 * @return {@link Empathyscope} instance
 	 * @throws IOException
 	 */
 	public static Empathyscope getInstance() throws IOException {
-		if (instance == null) {
-			instance = new Empathyscope();
+		Empathyscope value = instance;
+		if (value == null) {
+			synchronized (Empathyscope.class) {
+				value = instance;
+				if (value == null) {
+					value = new Empathyscope(LexicalUtility.getInstance());
+					instance = value;
+				}
+			}
 		}
-		return instance;
+		return value;
+	}
+
+	/**
+	 * Returns a new {@link Builder} for an {@link Empathyscope} with custom
+	 * lexical resources.
+	 * 
+	 * @return {@link Builder}
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Getter for the lexical resources used by this instance.
+	 * 
+	 * @return {@link LexicalUtility}
+	 */
+	public LexicalUtility getLexicalUtility() {
+		return lexUtil;
 	}
 
+	/**
+	 * Getter for the cache of analysis results, e.g. to read its hit and miss
+	 * counts.
+	 * 
+	 * @return {@link LruCache} or <code>null</code> if results aren't cached
+	 */
+	public LruCache<String, EmotionalState> getCache() {
+		return cache;
+	}
+
+	/**
+	 * Getter for the cache of the partial results of single sentences, e.g.
+	 * to read its hit and miss counts.
+	 * 
+	 * @return {@link LruCache} or <code>null</code> if sentence results aren't
+	 *         cached
+	 * @see Builder#setSentenceCache(int, long)
+	 */
+	public LruCache<String, ?> getSentenceCache() {
+		return sentenceCache;
+	}
 
-	private static final Pattern WORD_SPLITTER = Pattern.compile("\\s+");
 
 	/**
 	 * Textual affect sensing behavior, the main NLP algorithm which uses
@@ -72,131 +218,572 @@ public static Empathyscope getInstance() throws IOException {
 	 * @throws IOException
 	 */
 	public EmotionalState feel(String text) throws IOException {
+		return feel(text, scratch.get());
+	}
+
+	/**
+	 * Analyses a text of any length, which is read from a {@link Reader} in
+	 * chunks, in constant memory. Sentences are segmented incrementally across
+	 * chunk boundaries and scored as soon as they are complete, keeping only
+	 * the running maximum weights and valence of the text.
+	 * <p>
+	 * Unlike {@link #feel(String)} the result neither retains the text nor its
+	 * affect words; its text and list of affect words are empty. Sentences
+	 * longer than 65536 characters are scored in parts. The result cache
+	 * isn't used; the sentence cache is, if enabled.
+	 * 
+	 * @param reader
+	 *            {@link Reader} of the text to be analysed, which is read to
+	 *            its end but not closed
+	 * @return {@link EmotionalState} which represents data recognised from the
+	 *         text
+	 * @throws IOException
+	 */
+	public EmotionalState feel(Reader reader) throws IOException {
+		Scratch scratch = this.scratch.get();
+		Tokenizer tokenizer = scratch.tokenizer;
+		AffectWordHits hits = new AffectWordHits(4);
+		double[] maxWeights = new double[AffectWordHits.WEIGHT_COUNT];
+		double valence = 0.0;
+		char[] chunk = new char[STREAM_CHUNK_SIZE];
+		StringBuilder pending = new StringBuilder();
+
+		for (int n; (n = reader.read(chunk)) >= 0; ) {
+			for (int i = 0; i < n; i++) {
+				if (chunk[i] == '\n')
+					chunk[i] = ' ';
+			}
+			pending.append(chunk, 0, n);
+			String text = pending.toString();
+			tokenizer.tokenize(text);
+
+			// the last sentence may continue in the next chunk, unless it
+			// grew too long to wait for its end; the boundaries of earlier
+			// sentences can still move until a letter or digit follows them
+			int complete = completeSentences(text, tokenizer);
+			if (complete == 0) {
+				if (text.length() < MAX_PENDING_SENTENCE)
+					continue;
+				complete = tokenizer.getSentenceCount();
+			}
+			for (int i = 0; i < complete; i++)
+				valence = scoreSentence(text, i, hits, maxWeights, valence,
+						scratch);
+			pending.delete(0, (complete < tokenizer.getSentenceCount()) ?
+				tokenizer.getSentenceStart(complete) : text.length());
+		}
+
+		String text = pending.toString();
+		tokenizer.tokenize(text);
+		for (int i = 0; i < tokenizer.getSentenceCount(); i++)
+			valence = scoreSentence(text, i, hits, maxWeights, valence,
+					scratch);
+		return createEmotionalState("", new AffectWordHits(0), maxWeights,
+				valence);
+	}
+
+	/**
+	 * Counts the leading sentences of a tokenized text prefix whose end
+	 * boundaries are final. The sentence iterator may move or drop a boundary
+	 * once more text follows it (e.g. "ok.:" and "ok.:(") until it sees a
+	 * letter or digit, so only sentences followed by one are complete.
+	 */
+	private static int completeSentences(String text, Tokenizer tokenizer) {
+		int last = text.length() - 1;
+		while (last >= 0 && !Character.isLetterOrDigit(text.charAt(last)))
+			last--;
+		int complete = 0;
+		while (complete < tokenizer.getSentenceCount()
+				&& tokenizer.getSentenceEnd(complete) <= last)
+			complete++;
+		return complete;
+	}
+
+	/**
+	 * Analyses a text of any length, which is read from a
+	 * {@link ReadableByteChannel} in chunks, in constant memory (see
+	 * {@link #feel(Reader)}).
+	 * 
+	 * @param channel
+	 *            {@link ReadableByteChannel} of the text to be analysed, which
+	 *            is read to its end but not closed
+	 * @param charset
+	 *            {@link Charset} of the text
+	 * @return {@link EmotionalState} which represents data recognised from the
+	 *         text
+	 * @throws IOException
+	 */
+	public EmotionalState feel(ReadableByteChannel channel, Charset charset)
+			throws IOException {
+		return feel(Channels.newReader(channel, charset.newDecoder(), -1));
+	}
+
+	/**
+	 * Analyses many texts in parallel on the common {@link ForkJoinPool}.
+	 * 
+	 * @param texts
+	 *            {@link Collection} of texts to be analysed
+	 * @return {@link EmotionalStateBatch} with the results in input order
+	 * @throws IOException
+	 * @see #feelAll(Collection, ForkJoinPool)
+	 */
+	public EmotionalStateBatch feelAll(Collection<String> texts)
+			throws IOException {
+		return feelAll(texts, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Analyses many texts in parallel on the given {@link ForkJoinPool}. The
+	 * texts are split into chunks, each of which is analysed by one worker
+	 * with its own scratch buffers.
+	 * 
+	 * @param texts
+	 *            {@link Collection} of texts to be analysed
+	 * @param pool
+	 *            {@link ForkJoinPool} to run the analysis on
+	 * @return {@link EmotionalStateBatch} with the results in input order
+	 * @throws IOException
+	 */
+	public EmotionalStateBatch feelAll(Collection<String> texts,
+			ForkJoinPool pool) throws IOException {
+		long start = System.nanoTime();
+		String[] input = texts.toArray(new String[texts.size()]);
+		EmotionalState[] output = new EmotionalState[input.length];
+		int chunkSize = getChunkSize(input.length, pool.getParallelism());
+		try {
+			pool.invoke(new FeelTask(input, output, 0, input.length, chunkSize));
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+		return new EmotionalStateBatch(output, input, System.nanoTime() - start);
+	}
+
+	/**
+	 * Analyses many texts in parallel on the given {@link ExecutorService}.
+	 * The texts are split into chunks, each of which is analysed by one task
+	 * with its own scratch buffers.
+	 * 
+	 * @param texts
+	 *            {@link Collection} of texts to be analysed
+	 * @param executor
+	 *            {@link ExecutorService} to run the analysis on
+	 * @param parallelism
+	 *            the number of tasks to expect to run concurrently
+	 * @return {@link EmotionalStateBatch} with the results in input order
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public EmotionalStateBatch feelAll(Collection<String> texts,
+			ExecutorService executor, int parallelism)
+			throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		final String[] input = texts.toArray(new String[texts.size()]);
+		final EmotionalState[] output = new EmotionalState[input.length];
+		int chunkSize = getChunkSize(input.length, parallelism);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < input.length; i += chunkSize) {
+			final int from = i, to = Math.min(i + chunkSize, input.length);
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					feelRange(input, output, from, to);
+					return null;
+				}
+			}));
+		}
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		} catch (ExecutionException ex) {
+			for (Future<?> future : futures)
+				future.cancel(true);
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new Error(cause);
+		}
+		return new EmotionalStateBatch(output, input, System.nanoTime() - start);
+	}
 
+	private static int getChunkSize(int count, int parallelism) {
+		// a few chunks per worker to even out differences in text length
+		return Math.max(1, Math.min(256, count / (Math.max(parallelism, 1) * 4)));
+	}
+
+	private void feelRange(String[] input, EmotionalState[] output, int from,
+			int to) throws IOException {
+		Scratch scratch = this.scratch.get();
+		for (int i = from; i < to; i++)
+			output[i] = feel(input[i], scratch);
+	}
+
+	private EmotionalState feel(String text, Scratch scratch) throws IOException {
 		text = text.replace('\n', ' ');
-		List<AffectWord> affectWords = new ArrayList<AffectWord>();
-		List<String> sentences = ParsingUtility.parseSentences(text);
-
-		for (String sentence : sentences) {
-
-			// we imploy 5 heuristic rules to adjust emotive weights of the
-			// words:
-			// (1) negation in a sentence => flip valence of the affect words in
-			// it
-			boolean hasNegation = HeuristicsUtility.hasNegation(sentence
-					.toLowerCase());
-
-			// (2) more exclamination signs in a sentence => more intensive
-			// emotive weights
-			double exclaminationQoef = HeuristicsUtility
-					.computeExclaminationQoef(sentence.toLowerCase());
-
-			List<String> splittedWords = ParsingUtility.splitWords(sentence,
-        WORD_SPLITTER);
-			String previousWord = "";
-			for (String splittedWord : splittedWords) {
-
-				AffectWord emoWord = lexUtil
-						.getEmoticonAffectWord(splittedWord);
-
-				if (emoWord != null) {
-
-					// (3) more emoticons with more 'emotive' signs (e.g. :DDDD)
-					// => more intensive emotive weights
-					double emoticonCoef = HeuristicsUtility
-							.computeEmoticonCoef(splittedWord, emoWord);
-					emoWord.adjustWeights(exclaminationQoef * emoticonCoef);
-					affectWords.add(emoWord);
-				} else {
-
-					List<String> words = ParsingUtility
-							.parseWords(splittedWord);
-					for (String word : words) {
-						emoWord = lexUtil.getAffectWord(word.toLowerCase());
-						if (emoWord != null) {
-
-							// (4) word is upper case => more intensive emotive
-							// weights
-							double capsLockCoef = HeuristicsUtility
-									.computeCapsLockQoef(word);
-
-							// (5) previous word is a intensity modifier (e.g.
-							// "extremely") => more intensive emotive weights
-							double modifierCoef = HeuristicsUtility
-									.computeModifier(previousWord);
-
-							// change the affect word!
-							if (hasNegation)
-								emoWord.flipValence();
-							emoWord.adjustWeights(exclaminationQoef
-									* capsLockCoef * modifierCoef);
-
-							affectWords.add(emoWord);
-						}
-						previousWord = word;
-					}
+		if (cache == null)
+			return analyse(text, scratch);
+
+		EmotionalState state = cache.get(text);
+		if (state == null) {
+			state = analyse(text, scratch);
+			cache.put(text, state);
+		}
+		return state.copy();
+	}
+
+	private EmotionalState analyse(String text, Scratch scratch) throws IOException {
+		AffectWordHits hits = new AffectWordHits();
+		double[] maxWeights = scratch.maxWeights;
+		Arrays.fill(maxWeights, 0);
+		double valence = 0.0;
+		Tokenizer tokenizer = scratch.tokenizer;
+		tokenizer.tokenize(text);
+
+		if (sentenceCache == null) {
+			for (int i = 0; i < tokenizer.getSentenceCount(); i++)
+				scoreSentence(i, hits, scratch);
+			valence = SentenceScore.accumulate(hits, maxWeights,
+					scratch.hitWeights, valence);
+		} else {
+			// sentences are scored independently of each other, so quoted or
+			// repeated sentences can reuse their partial results
+			for (int i = 0; i < tokenizer.getSentenceCount(); i++) {
+				String sentence = text.substring(tokenizer.getSentenceStart(i),
+						tokenizer.getSentenceEnd(i));
+				SentenceScore score = sentenceCache.get(sentence);
+				if (score == null) {
+					AffectWordHits sentenceHits = new AffectWordHits(4);
+					scoreSentence(i, sentenceHits, scratch);
+					score = new SentenceScore(sentenceHits);
+					sentenceCache.put(sentence, score);
 				}
+				valence = score.mergeInto(hits, maxWeights, valence);
 			}
 		}
-		return createEmotionalState(text, affectWords);
+		return createEmotionalState(text, hits, maxWeights, valence);
 	}
 
-	private EmotionalState createEmotionalState(String text,
-			List<AffectWord> affectWords) {
-		TreeSet<Emotion> emotions = new TreeSet<Emotion>();
-		int generalValence = 0;
-		double valence, generalWeight, happinessWeight, sadnessWeight, angerWeight, fearWeight, disgustWeight, surpriseWeight;
-		// valence = generalWeight = happinessWeight = sadnessWeight =
-		// angerWeight = fearWeight = disgustWeight = surpriseWeight = 0.0;
-		valence = 0.0;
-		generalWeight = 0.0;
-		happinessWeight = 0.0;
-		sadnessWeight = 0.0;
-		angerWeight = 0.0;
-		fearWeight = 0.0;
-		disgustWeight = 0.0;
-		surpriseWeight = 0.0;
-
-		// compute weights. maximum weights for the particular emotion are
-		// taken.
-		for (AffectWord affectWord : affectWords) {
-			valence += affectWord.getGeneralValence();
-			if (affectWord.getGeneralWeight() > generalWeight)
-				generalWeight = affectWord.getGeneralWeight();
-			if (affectWord.getHappinessWeight() > happinessWeight)
-				happinessWeight = affectWord.getHappinessWeight();
-			if (affectWord.getSadnessWeight() > sadnessWeight)
-				sadnessWeight = affectWord.getSadnessWeight();
-			if (affectWord.getAngerWeight() > angerWeight)
-				angerWeight = affectWord.getAngerWeight();
-			if (affectWord.getFearWeight() > fearWeight)
-				fearWeight = affectWord.getFearWeight();
-			if (affectWord.getDisgustWeight() > disgustWeight)
-				disgustWeight = affectWord.getDisgustWeight();
-			if (affectWord.getSurpriseWeight() > surpriseWeight)
-				surpriseWeight = affectWord.getSurpriseWeight();
+	/**
+	 * Scores a sentence of a streamed text and merges its maximum weights
+	 * without retaining its hits. Returns the running sum of the valences,
+	 * which is added to in the same order as for texts analysed as a whole.
+	 */
+	private double scoreSentence(String text, int sentence,
+			AffectWordHits hits, double[] maxWeights, double valence,
+			Scratch scratch) {
+		if (sentenceCache == null) {
+			hits.clear();
+			scoreSentence(sentence, hits, scratch);
+			return SentenceScore.accumulate(hits, maxWeights, scratch.hitWeights,
+					valence);
+		}
+
+		Tokenizer tokenizer = scratch.tokenizer;
+		String sentenceText = text.substring(
+				tokenizer.getSentenceStart(sentence),
+				tokenizer.getSentenceEnd(sentence));
+		SentenceScore score = sentenceCache.get(sentenceText);
+		if (score == null) {
+			AffectWordHits sentenceHits = new AffectWordHits(4);
+			scoreSentence(sentence, sentenceHits, scratch);
+			score = new SentenceScore(sentenceHits);
+			sentenceCache.put(sentenceText, score);
 		}
+		return score.mergeWeightsInto(maxWeights, valence);
+	}
+
+	private void scoreSentence(int sentence, AffectWordHits hits,
+			Scratch scratch) {
+		Lexicon affectWordLexicon = lexUtil.getAffectWordLexicon();
+		Lexicon emoticonLexicon = lexUtil.getEmoticonLexicon();
+		Tokenizer tokenizer = scratch.tokenizer;
+		TextSpan word = scratch.word;
+		SentenceFeatures features = scratch.features;
+		features.extract(tokenizer, sentence);
+
+		// we imploy 5 heuristic rules to adjust emotive weights of the
+		// words:
+		// (1) negation in a sentence => flip valence of the affect words in
+		// it
+		boolean hasNegation = features.hasNegation();
+
+		// (2) more exclamination signs in a sentence => more intensive
+		// emotive weights
+		double exclaminationQoef = HeuristicsUtility
+				.computeExclaminationQoef(features.getExclaminationCount());
+
+		// tokens are inspected in place; emoticons don't count as previous
+		// words
+		int previousWord = -1;
+		for (int t = tokenizer.getFirstToken(sentence);
+				t < tokenizer.getEndToken(sentence); t++) {
+			tokenizer.getToken(t, word);
+			int emoticon = tokenizer.getTokenEmoticon(t);
+
+			if (emoticon >= 0) {
+
+				// (3) more emoticons with more 'emotive' signs (e.g. :DDDD)
+				// => more intensive emotive weights
+				boolean startsWithEmoticon =
+					emoticonLexicon.getWordLength(emoticon) != word.length();
+				double emoticonCoef = startsWithEmoticon ?
+					HeuristicsUtility.computeEmoticonCoef(word,
+						emoticonLexicon.getWord(emoticon), true) :
+					1.0;
+				hits.add(emoticonLexicon, emoticon,
+					exclaminationQoef * emoticonCoef,
+					startsWithEmoticon ? AffectWordHits.STARTS_WITH_EMOTICON : 0);
+			} else {
+
+				int entry = lexUtil.findAffectWord(word);
+				if (entry >= 0) {
+
+					// (4) word is upper case => more intensive emotive
+					// weights
+					double capsLockCoef = HeuristicsUtility
+							.computeCapsLockQoef(features.isCapsLock(t));
+
+					// (5) previous word is a intensity modifier (e.g.
+					// "extremely") => more intensive emotive weights
+					double modifierCoef = HeuristicsUtility
+							.computeModifier(previousWord >= 0 &&
+								features.isIntensityModifier(previousWord));
+
+					// record the affect word with its adjustments
+					hits.add(affectWordLexicon, entry,
+						exclaminationQoef * capsLockCoef * modifierCoef,
+						hasNegation ? AffectWordHits.NEGATED : 0);
+				}
+				previousWord = t;
+			}
+		}
+	}
+
+	private static EmotionalState createEmotionalState(String text,
+			AffectWordHits hits, double[] maxWeights, double valence) {
+		int generalValence = 0;
+		double generalWeight = maxWeights[0];
 		if (valence > 0)
 			generalValence = 1;
 		else if (valence < 0)
 			generalValence = -1;
 
-		if (happinessWeight > 0)
-			emotions.add(new Emotion(happinessWeight, Emotion.HAPPINESS));
-		if (sadnessWeight > 0)
-			emotions.add(new Emotion(sadnessWeight, Emotion.SADNESS));
-		if (angerWeight > 0)
-			emotions.add(new Emotion(angerWeight, Emotion.ANGER));
-		if (fearWeight > 0)
-			emotions.add(new Emotion(fearWeight, Emotion.FEAR));
-		if (disgustWeight > 0)
-			emotions.add(new Emotion(disgustWeight, Emotion.DISGUST));
-		if (surpriseWeight > 0)
-			emotions.add(new Emotion(surpriseWeight, Emotion.SURPRISE));
-		if (emotions.isEmpty())
-			emotions.add(new Emotion((0.2 + generalWeight) / 1.2,
-					Emotion.NEUTRAL));
-		return new EmotionalState(text, emotions, affectWords, generalWeight, generalValence);
+		// the weights of the six emotion types follow the general weight in
+		// the same order as in an EmotionalState, where they follow neutral
+		double[] weights = new double[EmotionalState.EMOTION_TYPE_COUNT];
+		boolean neutral = true;
+		for (int i = 1; i < weights.length; i++) {
+			weights[i] = maxWeights[i];
+			if (weights[i] > 0)
+				neutral = false;
+		}
+		if (neutral)
+			weights[1 + Emotion.NEUTRAL] = (0.2 + generalWeight) / 1.2;
+		return new EmotionalState(text, weights, hits, generalWeight, generalValence);
+	}
+
+
+	/**
+	 * Reusable buffers of one analysing thread.
+	 */
+	private static final class Scratch {
+
+		final Tokenizer tokenizer;
+
+		final TextSpan word = new TextSpan();
+
+		final SentenceFeatures features;
+
+		final double[] hitWeights = new double[AffectWordHits.WEIGHT_COUNT];
+
+		final double[] maxWeights = new double[AffectWordHits.WEIGHT_COUNT];
+
+		Scratch(LexicalUtility lexUtil) {
+			tokenizer = lexUtil.newTokenizer();
+			features = lexUtil.newSentenceFeatures();
+		}
+	}
+
+
+	private final class FeelTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String[] input;
+
+		private final EmotionalState[] output;
+
+		private final int from, to, chunkSize;
+
+		FeelTask(String[] input, EmotionalState[] output, int from, int to,
+				int chunkSize) {
+			this.input = input;
+			this.output = output;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= chunkSize) {
+				try {
+					feelRange(input, output, from, to);
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new FeelTask(input, output, from, mid, chunkSize),
+						new FeelTask(input, output, mid, to, chunkSize));
+			}
+		}
+	}
+
+
+	/**
+	 * Builds {@link Empathyscope} instances with custom lexical resources.
+	 * Resources which aren't set explicitly default to the standard ones.
+	 */
+	public static class Builder {
+
+		private Lexicon lexicon, emoticons;
+
+		private String lexiconFile = LexicalUtility.DEFAULT_LEXICON,
+				emoticonFile = LexicalUtility.DEFAULT_EMOTICONS,
+				keywordFile = LexicalUtility.DEFAULT_KEYWORDS;
+
+		private int cacheEntries = 0, sentenceCacheEntries = 0;
+
+		private long cacheChars = 0, sentenceCacheChars = 0;
+
+		private Builder() { }
+
+		/**
+		 * Sets the lexicon of affect words.
+		 * 
+		 * @param lexicon
+		 *            {@link Lexicon} of affect words
+		 * @return this builder
+		 */
+		public Builder setLexicon(Lexicon lexicon) {
+			this.lexicon = lexicon;
+			return this;
+		}
+
+		/**
+		 * Sets the resource name of the lexicon of affect words (see
+		 * {@link LexicalUtility#loadLexicon(String)}).
+		 * 
+		 * @param fileName
+		 *            {@link String} representing the resource name
+		 * @return this builder
+		 */
+		public Builder setLexicon(String fileName) {
+			this.lexicon = null;
+			this.lexiconFile = fileName;
+			return this;
+		}
+
+		/**
+		 * Sets the lexicon of emoticons.
+		 * 
+		 * @param emoticons
+		 *            {@link Lexicon} of emoticons
+		 * @return this builder
+		 */
+		public Builder setEmoticons(Lexicon emoticons) {
+			this.emoticons = emoticons;
+			return this;
+		}
+
+		/**
+		 * Sets the resource name of the lexicon of emoticons (see
+		 * {@link LexicalUtility#loadLexicon(String)}).
+		 * 
+		 * @param fileName
+		 *            {@link String} representing the resource name
+		 * @return this builder
+		 */
+		public Builder setEmoticons(String fileName) {
+			this.emoticons = null;
+			this.emoticonFile = fileName;
+			return this;
+		}
+
+		/**
+		 * Sets the resource name of the XML property file with the negation
+		 * and intensity modifier lists.
+		 * 
+		 * @param fileName
+		 *            {@link String} representing the resource name
+		 * @return this builder
+		 */
+		public Builder setKeywords(String fileName) {
+			this.keywordFile = fileName;
+			return this;
+		}
+
+		/**
+		 * Enables the cache of analysis results (see
+		 * {@link Empathyscope#newResultCache(int, long)}). It is disabled by
+		 * default.
+		 * 
+		 * @param maxEntries
+		 *            the maximum number of cached texts, or 0 to disable the
+		 *            cache
+		 * @param maxChars
+		 *            the maximum total length of the cached texts, or 0 to
+		 *            disable the cache
+		 * @return this builder
+		 */
+		public Builder setCache(int maxEntries, long maxChars) {
+			this.cacheEntries = maxEntries;
+			this.cacheChars = maxChars;
+			return this;
+		}
+
+		/**
+		 * Enables the cache of the partial results of single sentences, which
+		 * helps with long texts that quote or repeat sentences seen before
+		 * (e.g. forum posts or e-mail threads). It is disabled by default.
+		 * 
+		 * @param maxEntries
+		 *            the maximum number of cached sentences, or 0 to disable
+		 *            the cache
+		 * @param maxChars
+		 *            the maximum total length of the cached sentences, or 0
+		 *            to disable the cache
+		 * @return this builder
+		 */
+		public Builder setSentenceCache(int maxEntries, long maxChars) {
+			this.sentenceCacheEntries = maxEntries;
+			this.sentenceCacheChars = maxChars;
+			return this;
+		}
+
+		/**
+		 * Loads the resources which haven't been passed as objects and creates
+		 * the {@link Empathyscope}.
+		 * 
+		 * @return a new {@link Empathyscope} instance
+		 * @throws IOException
+		 */
+		public Empathyscope build() throws IOException {
+			PropertiesManager keywords = new PropertiesManager(keywordFile);
+			return new Empathyscope(new LexicalUtility(
+					(lexicon != null) ? lexicon : LexicalUtility.loadLexicon(lexiconFile),
+					(emoticons != null) ? emoticons : LexicalUtility.loadLexicon(emoticonFile),
+					LexicalUtility.getKeywords(keywords, "negations"),
+					LexicalUtility.getKeywords(keywords, "intensity.modifiers")),
+					(cacheEntries > 0 && cacheChars > 0) ?
+						newResultCache(cacheEntries, cacheChars) : null,
+					(sentenceCacheEntries > 0 && sentenceCacheChars > 0) ?
+						Empathyscope.<SentenceScore>newTextCache(sentenceCacheEntries,
+							sentenceCacheChars) :
+						null);
+		}
 	}
 
 }
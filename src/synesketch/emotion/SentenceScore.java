@@ -0,0 +1,103 @@
+package synesketch.emotion;
+
+
+/**
+ * The partial result of the analysis of one sentence: its affect words, the
+ * maximum of each adjusted weight among them and the valence of each of them.
+ * <p>
+ * Sentences are analysed independently of each other, so the result of a
+ * text is the concatenation of the affect words of its sentences, the maximum
+ * of their weights and the sum of their valences. The valences are added to
+ * the running sum of the text one by one, in the order of the affect words,
+ * so that the sum is the same as that of the hits of the whole text. Instances
+ * are immutable once created and may be shared between texts.
+ */
+final class SentenceScore
+{
+  private final AffectWordHits hits;
+
+  private final double[] maxWeights;
+
+  private final double[] valences;
+
+
+  /**
+   * Class constructor which computes the aggregates of the given hits.
+   *
+   * @param hits  the affect words of the sentence; not modified afterwards
+   */
+  SentenceScore( AffectWordHits hits )
+  {
+    this.hits = hits;
+    maxWeights = new double[AffectWordHits.WEIGHT_COUNT];
+    valences = new double[hits.size()];
+    double[] hitWeights = new double[AffectWordHits.WEIGHT_COUNT];
+    for (int i = 0; i < valences.length; i++) {
+      valences[i] = hits.getWeights(i, hitWeights);
+      max(hitWeights, maxWeights);
+    }
+  }
+
+
+  /**
+   * Computes the adjusted weights of all hits, updates the maximum weights
+   * and adds their valences to a running sum, one by one.
+   *
+   * @param hits  the hits to aggregate
+   * @param maxWeights  the maximum weights so far, which are updated in place
+   * @param hitWeights  a buffer of {@link AffectWordHits#WEIGHT_COUNT}
+   *   elements
+   * @param valence  the sum of the valences so far
+   * @return  the sum of the valences so far and those of the hits
+   */
+  static double accumulate( AffectWordHits hits, double[] maxWeights,
+    double[] hitWeights, double valence )
+  {
+    for (int i = 0; i < hits.size(); i++) {
+      valence += hits.getWeights(i, hitWeights);
+      max(hitWeights, maxWeights);
+    }
+    return valence;
+  }
+
+  private static void max( double[] weights, double[] maxWeights )
+  {
+    for (int k = 0; k < maxWeights.length; k++) {
+      if (weights[k] > maxWeights[k])
+        maxWeights[k] = weights[k];
+    }
+  }
+
+  /**
+   * Appends the hits of this sentence and merges its maximum weights.
+   *
+   * @param documentHits  the hits of the whole text
+   * @param documentMaxWeights  the maximum weights of the whole text, which
+   *   are updated in place
+   * @param valence  the sum of the valences of the text so far
+   * @return  the sum of the valences so far and those of this sentence
+   */
+  double mergeInto( AffectWordHits documentHits, double[] documentMaxWeights,
+    double valence )
+  {
+    documentHits.addAll(hits);
+    return mergeWeightsInto(documentMaxWeights, valence);
+  }
+
+  /**
+   * Merges the maximum weights of this sentence without its hits, for texts
+   * whose affect words aren't retained.
+   *
+   * @param documentMaxWeights  the maximum weights of the whole text, which
+   *   are updated in place
+   * @param valence  the sum of the valences of the text so far
+   * @return  the sum of the valences so far and those of this sentence
+   */
+  double mergeWeightsInto( double[] documentMaxWeights, double valence )
+  {
+    max(maxWeights, documentMaxWeights);
+    for (double v : valences)
+      valence += v;
+    return valence;
+  }
+}
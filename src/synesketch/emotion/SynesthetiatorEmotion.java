@@ -19,8 +19,6 @@
 package synesketch.emotion;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import processing.core.PApplet;
 import synesketch.Synesthetiator;
@@ -37,13 +35,15 @@
  */
 public class SynesthetiatorEmotion extends Synesthetiator {
 
-	private List<EmotionalState> emotionalStates = new ArrayList<EmotionalState>();
+	private final ConversationHistory history;
 
-	private Empathyscope empathyscope = Empathyscope.getInstance();
+	private final Empathyscope empathyscope;
 
   public SynesthetiatorEmotion() throws IOException
   {
     super();
+    empathyscope = Empathyscope.getInstance();
+    history = new ConversationHistory();
   }
 
 	/**
@@ -58,13 +58,64 @@ public SynesthetiatorEmotion(PApplet parent)
     throws IOException, NoSuchMethodException, IllegalAccessException
   {
 		super(parent);
+    empathyscope = Empathyscope.getInstance();
+    history = new ConversationHistory();
 	}
 
 	public SynesthetiatorEmotion( UpdateHandler handler ) throws IOException
+  {
+		this(handler, Empathyscope.getInstance());
+	}
+
+  /**
+   * Class constructor that sets the update handler and the analyzer which
+   * recognises emotions in text.
+   *
+   * @param handler  the update handler to notify, or <code>null</code>
+   * @param empathyscope  the analyzer to use
+   */
+	public SynesthetiatorEmotion( UpdateHandler handler, Empathyscope empathyscope )
+  {
+		this(handler, empathyscope, new ConversationHistory());
+	}
+
+  /**
+   * Class constructor that sets the update handler, the analyzer which
+   * recognises emotions in text and the history which links each new
+   * emotional state to the previous ones.
+   *
+   * @param handler  the update handler to notify, or <code>null</code>
+   * @param empathyscope  the analyzer to use
+   * @param history  the history of the conversation
+   */
+	public SynesthetiatorEmotion( UpdateHandler handler, Empathyscope empathyscope,
+    ConversationHistory history )
   {
 		super(handler);
+    this.empathyscope = empathyscope;
+    this.history = history;
 	}
 
+  /**
+   * Getter for the history of the emotional states recognised so far.
+   *
+   * @return  {@link ConversationHistory}
+   */
+  public ConversationHistory getHistory()
+  {
+    return history;
+  }
+
+  /**
+   * Getter for the smoothed mood of the conversation.
+   *
+   * @return  {@link EmotionalMomentum}
+   */
+  public EmotionalMomentum getMomentum()
+  {
+    return history.getMomentum();
+  }
+
 	/**
 	 * Defines behaviour of transferring affective textual information into
 	 * visual information (defines the synesthetic abilities).
@@ -76,13 +127,7 @@ public SynesthetiatorEmotion( UpdateHandler handler ) throws IOException
 	@Override
 	public EmotionalState synesthetiseDirect( String text ) throws IOException
 	{
-		EmotionalState current = empathyscope.feel(text);
-		if (!emotionalStates.isEmpty())
-			current
-					.setPrevious(emotionalStates
-							.get(emotionalStates.size() - 1));
-		emotionalStates.add(current);
-		return current;
+		return history.append(empathyscope.feel(text));
 	}
 
 }
@@ -0,0 +1,478 @@
+package synesketch.emotion;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import synesketch.SynesketchState;
+
+
+/**
+ * Recognises emotions in the messages of many concurrent conversations (e.g.
+ * chat rooms), keeping a {@link ConversationHistory} per conversation.
+ * <p>
+ * Conversations are identified by a session id and created on their first
+ * message. Idle sessions are evicted when there are more than a maximum
+ * number of sessions (least recently used first) or when they haven't
+ * received a message for an idle timeout. A session is never evicted while a
+ * message is being appended to its history; a message which arrives after
+ * its session was evicted starts a new session.
+ * <p>
+ * Instances are thread-safe; messages of different sessions are analysed
+ * concurrently.
+ */
+public class SynesthetiatorSessions
+{
+  /**
+   * Receives the emotional states recognised in the messages of all
+   * sessions.
+   */
+  public interface SessionUpdateHandler
+  {
+    /**
+     * Called with the emotional state recognised in a message.
+     *
+     * @param sessionId  the id of the session of the message
+     * @param state  the emotional state
+     * @throws Exception
+     */
+    void synesketchUpdate( String sessionId, SynesketchState state ) throws Exception;
+  }
+
+
+  /** The fraction of the sessions evicted at once when there are too many. */
+  private static final double EVICTION_FRACTION = 1.0 / 16;
+
+  private final ConcurrentHashMap<String, Session> sessions =
+    new ConcurrentHashMap<String, Session>();
+
+  private final Empathyscope empathyscope;
+
+  private final SessionUpdateHandler handler;
+
+  private final int maxSessions;
+
+  private final long idleTimeoutNanos;
+
+  private final int historyCapacity;
+
+  private final long historyMaxAgeNanos;
+
+  private final boolean summariesOnly;
+
+  private final double momentumHalfLife;
+
+  private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  private final Object evictionLock = new Object();
+
+
+  private SynesthetiatorSessions( Builder builder, Empathyscope empathyscope )
+  {
+    this.empathyscope = empathyscope;
+    handler = builder.handler;
+    maxSessions = builder.maxSessions;
+    idleTimeoutNanos = builder.idleTimeoutNanos;
+    historyCapacity = builder.historyCapacity;
+    historyMaxAgeNanos = builder.historyMaxAgeNanos;
+    summariesOnly = builder.summariesOnly;
+    momentumHalfLife = builder.momentumHalfLife;
+  }
+
+  /**
+   * Returns a new {@link Builder} for a session manager.
+   *
+   * @return  {@link Builder}
+   */
+  public static Builder builder()
+  {
+    return new Builder();
+  }
+
+
+  /**
+   * Recognises the emotions in a message of a session and links the result
+   * to the previous states of the session.
+   *
+   * @param sessionId  the id of the session
+   * @param text  the text of the message
+   * @return  the {@link EmotionalState} of the message
+   * @throws IOException
+   */
+  public EmotionalState synesthetiseDirect( String sessionId, String text )
+    throws IOException
+  {
+    final EmotionalState feeling = empathyscope.feel(text);
+    final EmotionalState[] state = new EmotionalState[1];
+    // appends while the session is mapped, so that it can't be evicted in
+    // between and the message end up in a detached history; the access time
+    // is taken there too, so that it never goes back for concurrent messages
+    sessions.compute(sessionId, new BiFunction<String, Session, Session>() {
+      @Override
+      public Session apply( String id, Session session )
+      {
+        if (session == null) {
+          session = new Session(new ConversationHistory(historyCapacity,
+            historyMaxAgeNanos, TimeUnit.NANOSECONDS, summariesOnly,
+            momentumHalfLife));
+        }
+        session.lastAccess = System.nanoTime();
+        state[0] = session.history.append(feeling);
+        return session;
+      }
+    });
+    evict(System.nanoTime());
+    return state[0];
+  }
+
+  /**
+   * Recognises the emotions in a message of a session and notifies the
+   * handler, if any, about the result.
+   *
+   * @param sessionId  the id of the session
+   * @param text  the text of the message
+   * @throws Exception  if the analysis or the handler fails
+   */
+  public void synesthetise( String sessionId, String text ) throws Exception
+  {
+    EmotionalState state = synesthetiseDirect(sessionId, text);
+    if (handler != null)
+      handler.synesketchUpdate(sessionId, state);
+  }
+
+
+  /**
+   * Returns the history of a session.
+   *
+   * @param sessionId  the id of the session
+   * @return  {@link ConversationHistory} or <code>null</code> if there is no
+   *   such session
+   */
+  public ConversationHistory getHistory( String sessionId )
+  {
+    Session session = sessions.get(sessionId);
+    return (session != null) ? session.history : null;
+  }
+
+  /**
+   * Returns the smoothed mood of a session.
+   *
+   * @param sessionId  the id of the session
+   * @return  {@link EmotionalMomentum} or <code>null</code> if there is no
+   *   such session
+   */
+  public EmotionalMomentum getMomentum( String sessionId )
+  {
+    Session session = sessions.get(sessionId);
+    return (session != null) ? session.history.getMomentum() : null;
+  }
+
+  /**
+   * Ends a session.
+   *
+   * @param sessionId  the id of the session
+   * @return  <code>true</code> if there was such a session
+   */
+  public boolean remove( String sessionId )
+  {
+    return sessions.remove(sessionId) != null;
+  }
+
+  /**
+   * Evicts the sessions which have been idle for longer than the idle
+   * timeout. This also happens regularly while messages arrive.
+   *
+   * @return  the number of evicted sessions
+   */
+  public int evictIdle()
+  {
+    long now = System.nanoTime();
+    lastSweep.set(now);
+    return (idleTimeoutNanos > 0) ? evictIdleSince(now - idleTimeoutNanos) : 0;
+  }
+
+
+  /**
+   * Returns the number of sessions.
+   *
+   * @return  the number of sessions
+   */
+  public int getSessionCount()
+  {
+    return sessions.size();
+  }
+
+  /**
+   * Returns the number of emotional states retained by all sessions.
+   *
+   * @return  the number of states
+   */
+  public long getRetainedStateCount()
+  {
+    long value = 0;
+    for (Session session : sessions.values())
+      value += session.history.size();
+    return value;
+  }
+
+  /**
+   * Returns the total length of the texts retained by all sessions, which
+   * dominates their memory use unless only summaries are retained.
+   *
+   * @return  the number of characters
+   */
+  public long getRetainedTextLength()
+  {
+    long value = 0;
+    for (Session session : sessions.values())
+      value += session.history.getTextLength();
+    return value;
+  }
+
+  /**
+   * Returns the number of sessions evicted so far, because they were idle
+   * or there were too many.
+   *
+   * @return  the number of evicted sessions
+   */
+  public long getEvictionCount()
+  {
+    return evictions.get();
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("%d sessions, %d evictions", getSessionCount(),
+      getEvictionCount());
+  }
+
+
+  private void evict( long now )
+  {
+    // sweeps for idle sessions about twice per timeout, by one thread at a
+    // time
+    long last = lastSweep.get();
+    if (idleTimeoutNanos > 0 && now - last >= idleTimeoutNanos / 2 &&
+      lastSweep.compareAndSet(last, now))
+    {
+      evictIdleSince(now - idleTimeoutNanos);
+    }
+
+    if (sessions.size() > maxSessions) {
+      synchronized (evictionLock) {
+        if (sessions.size() > maxSessions)
+          evictLeastRecentlyUsed();
+      }
+    }
+  }
+
+  private int evictIdleSince( long threshold )
+  {
+    IdleEviction eviction = new IdleEviction(threshold);
+    for (Map.Entry<String, Session> e : sessions.entrySet()) {
+      if (e.getValue().lastAccess - threshold < 0)
+        sessions.computeIfPresent(e.getKey(), eviction);
+    }
+    evictions.addAndGet(eviction.count);
+    return eviction.count;
+  }
+
+  private void evictLeastRecentlyUsed()
+  {
+    // evicts a batch of sessions at once, so that the cost of finding them
+    // is spread over many new sessions
+    // (access times are relative to now, since nano times may overflow)
+    long origin = System.nanoTime();
+    long[] accesses = new long[sessions.size()];
+    int n = 0;
+    for (Session session : sessions.values()) {
+      if (n == accesses.length)
+        break;
+      accesses[n++] = session.lastAccess - origin;
+    }
+    Arrays.sort(accesses, 0, n);
+    int excess = sessions.size() - maxSessions;
+    int count = Math.min(n, Math.max(excess, (int) (maxSessions * EVICTION_FRACTION)));
+    if (count > 0)
+      evictIdleSince(origin + accesses[count - 1] + 1);
+  }
+
+
+  /**
+   * Removes a session if it is still idle once no message is being appended
+   * to it, and counts the removed sessions.
+   */
+  private static final class IdleEviction
+    implements BiFunction<String, Session, Session>
+  {
+    private final long threshold;
+
+    int count = 0;
+
+    IdleEviction( long threshold )
+    {
+      this.threshold = threshold;
+    }
+
+    @Override
+    public Session apply( String id, Session session )
+    {
+      if (session.lastAccess - threshold >= 0)
+        return session;
+      count++;
+      return null;
+    }
+  }
+
+
+  private static final class Session
+  {
+    final ConversationHistory history;
+
+    volatile long lastAccess = System.nanoTime();
+
+    Session( ConversationHistory history )
+    {
+      this.history = history;
+    }
+  }
+
+
+  /**
+   * Builds {@link SynesthetiatorSessions} instances. Settings which aren't
+   * set explicitly default to the standard analyser, no handler, at most
+   * 65536 sessions without an idle timeout and the default
+   * {@link ConversationHistory} of each session.
+   */
+  public static class Builder
+  {
+    private Empathyscope empathyscope;
+
+    private SessionUpdateHandler handler;
+
+    private int maxSessions = 1 << 16;
+
+    private long idleTimeoutNanos = 0;
+
+    private int historyCapacity = ConversationHistory.DEFAULT_CAPACITY;
+
+    private long historyMaxAgeNanos = 0;
+
+    private boolean summariesOnly = false;
+
+    private double momentumHalfLife = EmotionalMomentum.DEFAULT_HALF_LIFE;
+
+    private Builder() { }
+
+    /**
+     * Sets the analyser which recognises emotions in text.
+     *
+     * @param empathyscope  {@link Empathyscope}
+     * @return  this builder
+     */
+    public Builder setEmpathyscope( Empathyscope empathyscope )
+    {
+      this.empathyscope = empathyscope;
+      return this;
+    }
+
+    /**
+     * Sets the handler to notify about the recognised emotional states.
+     *
+     * @param handler  {@link SessionUpdateHandler} or <code>null</code>
+     * @return  this builder
+     */
+    public Builder setHandler( SessionUpdateHandler handler )
+    {
+      this.handler = handler;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of sessions, beyond which the least recently
+     * used ones are evicted.
+     *
+     * @param maxSessions  the maximum number of sessions
+     * @return  this builder
+     */
+    public Builder setMaxSessions( int maxSessions )
+    {
+      if (maxSessions <= 0)
+        throw new IllegalArgumentException("Session bound must be positive");
+      this.maxSessions = maxSessions;
+      return this;
+    }
+
+    /**
+     * Sets the time after which idle sessions are evicted.
+     *
+     * @param timeout  the idle timeout, or 0 to keep idle sessions
+     * @param unit  the unit of <code>timeout</code>
+     * @return  this builder
+     */
+    public Builder setIdleTimeout( long timeout, TimeUnit unit )
+    {
+      if (timeout < 0)
+        throw new IllegalArgumentException("Idle timeout must not be negative");
+      this.idleTimeoutNanos = unit.toNanos(timeout);
+      return this;
+    }
+
+    /**
+     * Sets the policy of the history of each session (see
+     * {@link ConversationHistory#ConversationHistory(int, long, TimeUnit, boolean)}).
+     *
+     * @param capacity  the maximum number of states per session
+     * @param maxAge  the time after which states expire, or 0 if they don't
+     * @param unit  the unit of <code>maxAge</code>
+     * @param summariesOnly  whether only the summaries of the states are
+     *   retained
+     * @return  this builder
+     */
+    public Builder setHistory( int capacity, long maxAge, TimeUnit unit,
+      boolean summariesOnly )
+    {
+      if (capacity <= 0 || maxAge < 0)
+        throw new IllegalArgumentException("History bounds must be positive");
+      this.historyCapacity = capacity;
+      this.historyMaxAgeNanos = unit.toNanos(maxAge);
+      this.summariesOnly = summariesOnly;
+      return this;
+    }
+
+    /**
+     * Sets the half-life of the {@link EmotionalMomentum} of each session.
+     *
+     * @param halfLife  the number of states after which the influence of a
+     *   state halves
+     * @return  this builder
+     */
+    public Builder setMomentumHalfLife( double halfLife )
+    {
+      if (!(halfLife > 0))
+        throw new IllegalArgumentException("Half-life must be positive");
+      this.momentumHalfLife = halfLife;
+      return this;
+    }
+
+    /**
+     * Creates the {@link SynesthetiatorSessions}, loading the standard
+     * analyser if none was set.
+     *
+     * @return  a new {@link SynesthetiatorSessions} instance
+     * @throws IOException
+     */
+    public SynesthetiatorSessions build() throws IOException
+    {
+      return new SynesthetiatorSessions(this,
+        (empathyscope != null) ? empathyscope : Empathyscope.getInstance());
+    }
+  }
+}
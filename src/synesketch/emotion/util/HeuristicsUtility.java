@@ -64,9 +64,26 @@ public static double computeEmoticonCoefForSentence(String sentence)
 	 * @return double value of the emoticon qoef
 	 */
 	public static double computeEmoticonCoef(String word, AffectWord emoticon) {
-		if (emoticon.startsWithEmoticon()) {
-			String emotiveWord = emoticon.getWord();
-			return 1.0 + (0.2 * countChars(word, emotiveWord.charAt(emotiveWord
+		return computeEmoticonCoef(word, emoticon.getWord(),
+				emoticon.startsWithEmoticon());
+	}
+
+	/**
+	 * Computes emoticon qoef for the word. Qoef is based on number of important
+	 * chars in an emotion (e.g. ')' in ':)))))' ).
+	 * 
+	 * @param word
+	 *            {@link CharSequence} representing the word
+	 * @param emoticon
+	 *            {@link String} representing the emoticon
+	 * @param startsWithEmoticon
+	 *            boolean, true if the word only starts with the emoticon
+	 * @return double value of the emoticon qoef
+	 */
+	public static double computeEmoticonCoef(CharSequence word, String emoticon,
+			boolean startsWithEmoticon) {
+		if (startsWithEmoticon) {
+			return 1.0 + (0.2 * countChars(word, emoticon.charAt(emoticon
 					.length() - 1)));
 		} else {
 			return 1.0;
@@ -85,6 +102,19 @@ public static boolean hasNegation(String sentence) throws IOException {
 		return LexicalUtility.getInstance().hasNegation(sentence);
 	}
 
+	/**
+	 * Returns true if sentence has negation in it.
+	 * 
+	 * @param sentence
+	 *            {@link String} representing the sentence
+	 * @param lexUtil
+	 *            {@link LexicalUtility} which defines the negations
+	 * @return boolean, true if sentence has negation in it
+	 */
+	public static boolean hasNegation(String sentence, LexicalUtility lexUtil) {
+		return lexUtil.hasNegation(sentence);
+	}
+
 	/**
 	 * Computes the intensity modifier based on the word.
 	 * 
@@ -94,7 +124,32 @@ public static boolean hasNegation(String sentence) throws IOException {
 	 * @throws IOException
 	 */
 	public static double computeModifier(String word) throws IOException {
-		if (isIntensityModifier(word))
+		return computeModifier(word, LexicalUtility.getInstance());
+	}
+
+	/**
+	 * Computes the intensity modifier based on the word.
+	 * 
+	 * @param word
+	 *            {@link CharSequence} representing the word
+	 * @param lexUtil
+	 *            {@link LexicalUtility} which defines the intensity modifiers
+	 * @return double representing the modifier
+	 */
+	public static double computeModifier(CharSequence word, LexicalUtility lexUtil) {
+		return computeModifier(lexUtil.isIntensityModifier(word));
+	}
+
+	/**
+	 * Computes the intensity modifier of a word which is known to be (or not
+	 * to be) an intensity modifier.
+	 * 
+	 * @param intensityModifier
+	 *            boolean, true if the word is an intensity modifier
+	 * @return double representing the modifier
+	 */
+	public static double computeModifier(boolean intensityModifier) {
+		if (intensityModifier)
 			return 1.5;
 		else
 			return 1.0;
@@ -103,11 +158,22 @@ public static double computeModifier(String word) throws IOException {
 	/**
 	 * Computes the upper case qoeficient.
 	 * 
-	 * @param word {@link String} representing the word
+	 * @param word {@link CharSequence} representing the word
 	 * @return double representing the upper case qoeficient
 	 */
-	public static double computeCapsLockQoef(String word) {
-		if (isCapsLock(word))
+	public static double computeCapsLockQoef(CharSequence word) {
+		return computeCapsLockQoef(isCapsLock(word));
+	}
+
+	/**
+	 * Computes the upper case qoeficient of a word which is known to be (or not
+	 * to be) upper case.
+	 * 
+	 * @param capsLock boolean, true if the word has no lower case letters
+	 * @return double representing the upper case qoeficient
+	 */
+	public static double computeCapsLockQoef(boolean capsLock) {
+		if (capsLock)
 			return 1.5;
 		else
 			return 1.0;
@@ -121,10 +187,20 @@ public static double computeCapsLockQoef(String word) {
 	 */
 	
 	public static double computeExclaminationQoef(String text) {
-		return 1.0 + (0.2 * countChars(text, '!'));
+		return computeExclaminationQoef(countChars(text, '!'));
 	}
 
-	private static boolean isCapsLock(String word) {
+	/**
+	 * Computes the exclamination qoef from the number of '!' chars in a sentence.
+	 * 
+	 * @param exclaminations int representing the number of '!' chars
+	 * @return double representing the exclamination qoef
+	 */
+	public static double computeExclaminationQoef(int exclaminations) {
+		return 1.0 + (0.2 * exclaminations);
+	}
+
+	private static boolean isCapsLock(CharSequence word) {
 		for (int i = 0; i < word.length(); i++) {
 			if (Character.isLowerCase(word.charAt(i)))
 				return false;
@@ -132,11 +208,7 @@ private static boolean isCapsLock(String word) {
 		return true;
 	}
 
-	private static boolean isIntensityModifier(String word) throws IOException {
-		return LexicalUtility.getInstance().isIntensityModifier(word);
-	}
-
-	private static int countChars(String arg, char c) {
+	private static int countChars(CharSequence arg, char c) {
 		int count = 0;
 		for (int i = 0; i < arg.length(); i++) {
 			if (arg.charAt(i) == c)
@@ -0,0 +1,257 @@
+package synesketch.emotion.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * An Aho-Corasick automaton over a fixed list of keywords.
+ * <p>
+ * The trie is compiled into flat arrays at construction time. It answers two
+ * kinds of queries, each in a single pass over the input and in time
+ * proportional to its length (plus the number of matches):
+ * <ul>
+ * <li>{@link #findPrefix(CharSequence, int, int)} matches a keyword against
+ * the beginning of a token, and
+ * <li>{@link #findAll(CharSequence, int, int, boolean[])} finds every keyword
+ * occurring anywhere in a text.
+ * </ul>
+ * Scans which inspect the text for other features at the same time can drive
+ * the automaton one character after another with {@link #next(int, char)}.
+ * Keywords are identified by their position in the list the automaton was
+ * built from. If a keyword occurs more than once, its first position is used.
+ */
+public class KeywordAutomaton
+{
+  private static final int ROOT = 0;
+
+  /** The state of a scan before its first character. */
+  public static final int START = ROOT;
+
+  private final int keywordCount;
+
+  /** Transitions of node <code>n</code> are at <code>[edgeStart[n], edgeStart[n+1])</code>, sorted by label. */
+  private final int[] edgeStart;
+
+  private final char[] edgeLabels;
+
+  private final int[] edgeTargets;
+
+  private final int[] failure;
+
+  /** The next node on the failure chain which ends a keyword, or -1. */
+  private final int[] dictionarySuffix;
+
+  /** The keyword ending at a node, or -1. */
+  private final int[] keywords;
+
+
+  /**
+   * Compiles the automaton for the given keywords.
+   *
+   * @param keywords  the list of keywords
+   */
+  public KeywordAutomaton( List<String> keywords )
+  {
+    keywordCount = keywords.size();
+
+    List<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character, Integer>>();
+    List<Integer> terminals = new ArrayList<Integer>();
+    trie.add(new TreeMap<Character, Integer>());
+    terminals.add(-1);
+    for (int id = 0; id < keywordCount; id++) {
+      String keyword = keywords.get(id);
+      int node = ROOT;
+      for (int i = 0; i < keyword.length(); i++) {
+        Integer next = trie.get(node).get(keyword.charAt(i));
+        if (next == null) {
+          next = trie.size();
+          trie.get(node).put(keyword.charAt(i), next);
+          trie.add(new TreeMap<Character, Integer>());
+          terminals.add(-1);
+        }
+        node = next;
+      }
+      if (terminals.get(node) < 0)
+        terminals.set(node, id);
+    }
+
+    int nodeCount = trie.size();
+    edgeStart = new int[nodeCount + 1];
+    edgeLabels = new char[nodeCount - 1];
+    edgeTargets = new int[nodeCount - 1];
+    this.keywords = new int[nodeCount];
+    int edge = 0;
+    for (int node = 0; node < nodeCount; node++) {
+      edgeStart[node] = edge;
+      for (Map.Entry<Character, Integer> e: trie.get(node).entrySet()) {
+        edgeLabels[edge] = e.getKey();
+        edgeTargets[edge] = e.getValue();
+        edge++;
+      }
+      this.keywords[node] = terminals.get(node);
+    }
+    edgeStart[nodeCount] = edge;
+
+    // breadth-first computation of the failure and dictionary suffix links
+    failure = new int[nodeCount];
+    dictionarySuffix = new int[nodeCount];
+    dictionarySuffix[ROOT] = -1;
+    int[] queue = new int[nodeCount];
+    int head = 0, tail = 0;
+    for (int e = edgeStart[ROOT]; e < edgeStart[ROOT + 1]; e++) {
+      int child = edgeTargets[e];
+      failure[child] = ROOT;
+      dictionarySuffix[child] = -1;
+      queue[tail++] = child;
+    }
+    while (head < tail) {
+      int node = queue[head++];
+      for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+        int child = edgeTargets[e];
+        int f = failure[node];
+        int next;
+        while ((next = transition(f, edgeLabels[e])) < 0 && f != ROOT)
+          f = failure[f];
+        failure[child] = (next >= 0) ? next : ROOT;
+        int fc = failure[child];
+        dictionarySuffix[child] = (this.keywords[fc] >= 0) ? fc : dictionarySuffix[fc];
+        queue[tail++] = child;
+      }
+    }
+  }
+
+
+  /**
+   * Returns the number of keywords this automaton was built from.
+   *
+   * @return the number of keywords
+   */
+  public int size()
+  {
+    return keywordCount;
+  }
+
+
+  /**
+   * Matches the keywords against the token <code>text[start, end)</code>. If
+   * the whole token is a keyword, it is returned. Otherwise the result is the
+   * keyword with the lowest position among those which are a proper prefix of
+   * the token.
+   *
+   * @param text  the text containing the token
+   * @param start  the start of the token (inclusive)
+   * @param end  the end of the token (exclusive)
+   * @return  the position of the matched keyword or -1 if there is none
+   */
+  public int findPrefix( CharSequence text, int start, int end )
+  {
+    int best = -1;
+    int node = ROOT;
+    for (int i = start; i < end; i++) {
+      int k = keywords[node];
+      if (k >= 0 && (best < 0 || k < best))
+        best = k;
+      node = transition(node, text.charAt(i));
+      if (node < 0)
+        return best;
+    }
+    return (keywords[node] >= 0 && end > start) ? keywords[node] : best;
+  }
+
+
+  /**
+   * Marks all keywords which occur in <code>text[start, end)</code>.
+   *
+   * @param text  the text to scan
+   * @param start  the start of the scanned range (inclusive)
+   * @param end  the end of the scanned range (exclusive)
+   * @param found  an array of at least {@link #size()} elements; the element
+   *   at the position of every keyword found is set to <code>true</code>
+   * @return  the number of keyword occurrences, including repeated ones
+   */
+  public int findAll( CharSequence text, int start, int end, boolean[] found )
+  {
+    int count = 0;
+    int node = ROOT;
+    for (int i = start; i < end; i++) {
+      node = next(node, text.charAt(i));
+      for (int o = (keywords[node] >= 0) ? node : dictionarySuffix[node];
+        o >= 0; o = dictionarySuffix[o])
+      {
+        found[keywords[o]] = true;
+        count++;
+      }
+    }
+    return count;
+  }
+
+
+  /**
+   * Returns whether any keyword occurs in <code>text[start, end)</code>.
+   *
+   * @param text  the text to scan
+   * @param start  the start of the scanned range (inclusive)
+   * @param end  the end of the scanned range (exclusive)
+   * @return  <code>true</code> if a keyword was found
+   */
+  public boolean containsAny( CharSequence text, int start, int end )
+  {
+    int node = ROOT;
+    if (endsKeyword(node))
+      return true;
+    for (int i = start; i < end; i++) {
+      node = next(node, text.charAt(i));
+      if (endsKeyword(node))
+        return true;
+    }
+    return false;
+  }
+
+
+  /**
+   * Advances a scan for keywords anywhere in a text by one character.
+   *
+   * @param state  the state after the previous character, or {@link #START}
+   * @param c  the next character
+   * @return  the state after <code>c</code>
+   */
+  public int next( int state, char c )
+  {
+    int next;
+    while ((next = transition(state, c)) < 0 && state != ROOT)
+      state = failure[state];
+    return (next >= 0) ? next : ROOT;
+  }
+
+  /**
+   * Returns whether a keyword ends at the last character consumed by a scan.
+   *
+   * @param state  the state returned by {@link #next(int, char)}
+   * @return  <code>true</code> if a keyword ends at this state
+   */
+  public boolean endsKeyword( int state )
+  {
+    return keywords[state] >= 0 || dictionarySuffix[state] >= 0;
+  }
+
+
+  private int transition( int node, char c )
+  {
+    int lo = edgeStart[node], hi = edgeStart[node + 1] - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      char label = edgeLabels[mid];
+      if (label < c) {
+        lo = mid + 1;
+      } else if (label > c) {
+        hi = mid - 1;
+      } else {
+        return edgeTargets[mid];
+      }
+    }
+    return -1;
+  }
+}
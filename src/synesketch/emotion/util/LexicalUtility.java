@@ -19,8 +19,11 @@
 package synesketch.emotion.util;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import synesketch.emotion.AffectWord;
@@ -37,32 +40,69 @@
  */
 public class LexicalUtility {
 
-	private static LexicalUtility instance;
+	private static volatile LexicalUtility instance;
 
-	private String fileNameLexicon = "/data/lex/synesketch_lexicon.txt";
-	private String fileNameEmoticons = "/data/lex/synesketch_lexicon_emoticons.txt";
-	private String fileNameProperties = "/data/lex/keywords.xml";
+	/**
+	 * Name of the system property which points to a directory with lexicon
+	 * images (see {@link LexiconCompiler}). If it is set and contains an image
+	 * named like a lexicon file, but with the extension <code>.bin</code>, the
+	 * image is memory-mapped instead of parsing the lexicon file.
+	 */
+	public static final String LEXICON_IMAGE_DIR_PROPERTY = "synesketch.lexicon.dir";
+
+	/** Resource name of the standard Synesketch Lexicon. */
+	public static final String DEFAULT_LEXICON = "/data/lex/synesketch_lexicon.txt";
+
+	/** Resource name of the standard emoticon lexicon. */
+	public static final String DEFAULT_EMOTICONS = "/data/lex/synesketch_lexicon_emoticons.txt";
+
+	/** Resource name of the standard negation and intensity modifier lists. */
+	public static final String DEFAULT_KEYWORDS = "/data/lex/keywords.xml";
 
-	private List<AffectWord> affectWords;
-	private List<AffectWord> emoticons;
+	/** The coefficient all lexicon weights are adjusted by. */
+	public static final double NORMALISATOR = 0.75;
 
-	private List<String> negations;
+	private final Lexicon affectWords;
+	private final Lexicon emoticons;
+	private final KeywordAutomaton emoticonMatcher;
 
-	private List<String> intensityModifiers;
+	private final List<String> negations;
+	private final KeywordAutomaton negationMatcher;
 
-	private double normalisator = 0.75;
+	private final List<String> intensityModifiers;
+	private final LexiconIndex intensityModifierIndex;
 
 
-	private LexicalUtility() throws IOException {
-		affectWords = new ArrayList<AffectWord>();
-		emoticons = new ArrayList<AffectWord>();
-		PropertiesManager pm = new PropertiesManager(fileNameProperties);
-		negations = ParsingUtility
-				.splitWords(pm.getProperty("negations"), COMMA_SPLIT_PATTERN);
-		intensityModifiers = ParsingUtility.splitWords(pm
-				.getProperty("intensity.modifiers"), COMMA_SPLIT_PATTERN);
-		parseLexiconFile(affectWords, fileNameLexicon);
-		parseLexiconFile(emoticons, fileNameEmoticons);
+	/**
+	 * Class constructor which sets the lexicons and keyword lists. Instances
+	 * are immutable and may be shared between threads.
+	 * 
+	 * @param affectWords
+	 *            {@link Lexicon} of affect words
+	 * @param emoticons
+	 *            {@link Lexicon} of emoticons
+	 * @param negations
+	 *            {@link List} of negation words
+	 * @param intensityModifiers
+	 *            {@link List} of intensity modifier words
+	 */
+	public LexicalUtility(Lexicon affectWords, Lexicon emoticons,
+			List<String> negations, List<String> intensityModifiers) {
+		this.affectWords = affectWords;
+		this.emoticons = emoticons;
+		this.negations = Collections.unmodifiableList(
+				new ArrayList<String>(negations));
+		this.intensityModifiers = Collections.unmodifiableList(
+				new ArrayList<String>(intensityModifiers));
+		emoticonMatcher = new KeywordAutomaton(emoticons.getWords());
+		negationMatcher = new KeywordAutomaton(this.negations);
+		intensityModifierIndex = new LexiconIndex(this.intensityModifiers);
+	}
+
+	private LexicalUtility(PropertiesManager keywords) throws IOException {
+		this(loadLexicon(DEFAULT_LEXICON), loadLexicon(DEFAULT_EMOTICONS),
+				getKeywords(keywords, "negations"),
+				getKeywords(keywords, "intensity.modifiers"));
 	}
 
 	/**
@@ -72,50 +112,64 @@ private LexicalUtility() throws IOException {
 	 * @throws IOException
 	 */
 	public static LexicalUtility getInstance() throws IOException {
-		if (instance == null) {
-			instance = new LexicalUtility();
+		LexicalUtility value = instance;
+		if (value == null) {
+			synchronized (LexicalUtility.class) {
+				value = instance;
+				if (value == null) {
+					value = new LexicalUtility(
+							new PropertiesManager(DEFAULT_KEYWORDS));
+					instance = value;
+				}
+			}
 		}
-		return instance;
+		return value;
 	}
 
-	private void parseLexiconFile(List<AffectWord> wordList, String fileName)
-			throws IOException
-  {
-    InputStream in = this.getClass().getResourceAsStream(fileName);
-    if (in == null)
-      throw new FileNotFoundException(fileName);
-    try (BufferedReader reader =
-      new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)))
-    {
-      String line;
-      while ((line = reader.readLine()) != null)
-        wordList.add(parseLine(line));
-    }
+	/**
+	 * Reads a keyword list (like "negations" or "intensity.modifiers") from a
+	 * keyword property file.
+	 * 
+	 * @param keywords
+	 *            {@link PropertiesManager} of the keyword property file
+	 * @param key
+	 *            {@link String} representing the name of the keyword list
+	 * @return the list of keywords
+	 * @throws IOException
+	 *             if the list is missing
+	 */
+	public static List<String> getKeywords(PropertiesManager keywords,
+			String key) throws IOException {
+		String value = keywords.getProperty(key);
+		if (value == null)
+			throw new IOException("Missing keyword list: " + key);
+		return ParsingUtility.splitWords(value, COMMA_SPLIT_PATTERN);
 	}
 
 	/**
-	 * Parses one line of the Synesketch Lexicon and returns the
-	 * {@link AffectWord}
+	 * Loads a lexicon from a resource in the textual format of the Synesketch
+	 * Lexicon, or from a lexicon image if {@link #LEXICON_IMAGE_DIR_PROPERTY}
+	 * points to one for it.
 	 * 
-	 * @param line
-	 *            {@link String} representing the line of the Synesketch Lexicon
-	 * @return {@link AffectWord}
+	 * @param fileName
+	 *            {@link String} representing the resource name of the lexicon
+	 * @return {@link Lexicon}
+	 * @throws IOException
 	 */
-	private AffectWord parseLine(String line) {
-		AffectWord value;
-		String[] text = line.split(" ");
-		String word = text[0];
-		double generalWeight = Double.parseDouble(text[1]);
-		double happinessWeight = Double.parseDouble(text[2]);
-		double sadnessWeight = Double.parseDouble(text[3]);
-		double angerWeight = Double.parseDouble(text[4]);
-		double fearWeight = Double.parseDouble(text[5]);
-		double disgustWeight = Double.parseDouble(text[6]);
-		double surpriseWeight = Double.parseDouble(text[7]);
-		value = new AffectWord(word, generalWeight, happinessWeight,
-				sadnessWeight, angerWeight, fearWeight, disgustWeight,
-				surpriseWeight, normalisator);
-		return value;
+	public static Lexicon loadLexicon(String fileName) throws IOException {
+		String imageDir = System.getProperty(LEXICON_IMAGE_DIR_PROPERTY);
+		if (imageDir != null) {
+			String name = fileName.substring(fileName.lastIndexOf('/') + 1);
+			Path image = Paths.get(imageDir,
+				name.substring(0, name.lastIndexOf('.')) + ".bin");
+			if (Files.isRegularFile(image))
+				return MappedLexicon.map(image, NORMALISATOR);
+		}
+
+		InputStream in = LexicalUtility.class.getResourceAsStream(fileName);
+		if (in == null)
+			throw new FileNotFoundException(fileName);
+		return PackedLexicon.parse(in, NORMALISATOR);
 	}
 
 	/**
@@ -126,12 +180,37 @@ private AffectWord parseLine(String line) {
 	 * @return {@link AffectWord}
 	 */
 	public AffectWord getAffectWord(String word) {
-		for (AffectWord affectWord : affectWords) {
-			if (affectWord.getWord().equals(word)) {
-				return affectWord.clone();
-			}
-		}
-		return null;
+		return affectWords.getAffectWord(word);
+	}
+
+	/**
+	 * Returns the position of the entry for the given word in the lexicon of
+	 * affect words, ignoring the case of the word (see
+	 * {@link Lexicon#indexOf(CharSequence, int, int, boolean)}). The word is
+	 * compared in place, e.g. through a {@link TextSpan} over the analysed
+	 * text, so the lookup doesn't allocate.
+	 * 
+	 * @param word
+	 *            {@link CharSequence} representing the word
+	 * @return the position in the lexicon returned by
+	 *         {@link #getAffectWordLexicon()} or -1 if there is no match
+	 */
+	public int findAffectWord(CharSequence word) {
+		return affectWords.indexOf(word, 0, word.length(), true);
+	}
+
+	/**
+	 * Returns the position of the emoticon which is the given word or which
+	 * the given word starts with in the emoticon lexicon. If the word isn't an
+	 * emoticon itself, the first listed emoticon it starts with is returned.
+	 * 
+	 * @param word
+	 *            {@link CharSequence} representing the word
+	 * @return the position in the lexicon returned by
+	 *         {@link #getEmoticonLexicon()} or -1 if there is no match
+	 */
+	public int findEmoticon(CharSequence word) {
+		return emoticonMatcher.findPrefix(word, 0, word.length());
 	}
 
 	/**
@@ -143,19 +222,13 @@ public AffectWord getAffectWord(String word) {
 	 * @return {@link AffectWord}
 	 */
 	public AffectWord getEmoticonAffectWord(String word) {
-		for (AffectWord affectWordEmoticon : emoticons) {
-			if (affectWordEmoticon.getWord().equals(word)) {
-				return affectWordEmoticon.clone();
-			}
-		}
-		for (AffectWord affectWordEmoticon : emoticons) {
-			String emoticon = affectWordEmoticon.getWord();
-			if (ParsingUtility.containsFirst(word, emoticon)) {
-				affectWordEmoticon.setStartsWithEmoticon(true);
-				return affectWordEmoticon.clone();
-			}
-		}
-		return null;
+		int i = findEmoticon(word);
+		if (i < 0)
+			return null;
+		AffectWord affectWordEmoticon = emoticons.getAffectWord(i);
+		if (affectWordEmoticon.getWord().length() != word.length())
+			affectWordEmoticon.setStartsWithEmoticon(true);
+		return affectWordEmoticon;
 	}
 
 	/**
@@ -168,11 +241,14 @@ public AffectWord getEmoticonAffectWord(String word) {
 	 */
 	public List<AffectWord> getEmoticonWords(String sentence) {
 		List<AffectWord> value = new ArrayList<AffectWord>();
-		for (AffectWord emoticon : emoticons) {
-			String emoticonWord = emoticon.getWord();
-			if (sentence.contains(emoticonWord)) {
-				emoticon.setStartsWithEmoticon(true);
-				value.add(emoticon);
+		boolean[] found = new boolean[emoticons.size()];
+		if (emoticonMatcher.findAll(sentence, 0, sentence.length(), found) != 0) {
+			for (int i = 0; i < found.length; i++) {
+				if (found[i]) {
+					AffectWord emoticon = emoticons.getAffectWord(i);
+					emoticon.setStartsWithEmoticon(true);
+					value.add(emoticon);
+				}
 			}
 		}
 		return value;
@@ -184,9 +260,47 @@ public List<AffectWord> getEmoticonWords(String sentence) {
 	 * @return the list of {@link AffectWord} instances
 	 */
 	public List<AffectWord> getAffectWords() {
+		return affectWords.asList();
+	}
+
+	/**
+	 * Returns the lexicon of affect words.
+	 * 
+	 * @return the {@link Lexicon} of affect words
+	 */
+	public Lexicon getAffectWordLexicon() {
 		return affectWords;
 	}
 
+	/**
+	 * Returns the lexicon of emoticons.
+	 * 
+	 * @return the {@link Lexicon} of emoticons
+	 */
+	public Lexicon getEmoticonLexicon() {
+		return emoticons;
+	}
+
+	/**
+	 * Returns a new {@link Tokenizer} which recognises the emoticons of this
+	 * instance.
+	 * 
+	 * @return a new {@link Tokenizer}
+	 */
+	public Tokenizer newTokenizer() {
+		return new Tokenizer(emoticonMatcher);
+	}
+
+	/**
+	 * Returns a new {@link SentenceFeatures} extractor which uses the
+	 * negations and intensity modifiers of this instance.
+	 * 
+	 * @return a new {@link SentenceFeatures}
+	 */
+	public SentenceFeatures newSentenceFeatures() {
+		return new SentenceFeatures(this);
+	}
+
 	/**
 	 * Returns true if the word is a negation.
 	 * 
@@ -206,23 +320,28 @@ public boolean isNegation(String word) {
 	 * @return boolean, true is the sentence contains negations
 	 */
 	public boolean hasNegation(String sentence) {
-		for (String negation : negations) {
-			if (sentence.contains(negation)) {
-				return true;
-			}
-		}
-		return false;
+		return negationMatcher.containsAny(sentence, 0, sentence.length());
+	}
+
+	/**
+	 * Returns the automaton which finds the negation words anywhere in a
+	 * text, e.g. as part of a scan for other sentence features.
+	 * 
+	 * @return {@link KeywordAutomaton} of the negation words
+	 */
+	public KeywordAutomaton getNegationMatcher() {
+		return negationMatcher;
 	}
 
 	/**
 	 * Returns true if the word is an intensity modifier.
 	 * 
 	 * @param word
-	 *            {@link String} which represents a word
+	 *            {@link CharSequence} which represents a word
 	 * @return boolean, true is the word is an intensity modifier
 	 */
-	public boolean isIntensityModifier(String word) {
-		return intensityModifiers.contains(word);
+	public boolean isIntensityModifier(CharSequence word) {
+		return intensityModifierIndex.indexOf(word) >= 0;
 	}
 
 }
@@ -0,0 +1,169 @@
+package synesketch.emotion.util;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import synesketch.emotion.AffectWord;
+import synesketch.emotion.Emotion;
+
+
+/**
+ * A read-only collection of affect words, addressed by their position in the
+ * lexicon and looked up by word.
+ */
+public abstract class Lexicon
+{
+  /**
+   * Returns the number of entries in the lexicon.
+   *
+   * @return the number of entries
+   */
+  public abstract int size();
+
+  /**
+   * Returns the position of the given word in the lexicon.
+   *
+   * @param word  the word to look up
+   * @return  the position of the first entry for <code>word</code> or -1 if
+   *   there is none
+   */
+  public int indexOf( String word )
+  {
+    return indexOf(word, 0, word.length(), false);
+  }
+
+  /**
+   * Returns the position of the word <code>text[start, end)</code> in the
+   * lexicon. The word is compared in place, so the lookup doesn't allocate,
+   * except for lower-case lookups of the rare words which
+   * {@link String#toLowerCase()} doesn't convert character by character
+   * (e.g. words with a capital I with dot above).
+   *
+   * @param text  the text containing the word
+   * @param start  the start of the word (inclusive)
+   * @param end  the end of the word (exclusive)
+   * @param lowerCase  whether to look up the word converted like
+   *   {@link String#toLowerCase()}, so that e.g. <code>Happy</code> and
+   *   <code>HAPPY</code> find the entry for <code>happy</code>; entries with
+   *   upper case characters can't be found that way
+   * @return  the position of the first entry for the word or -1 if there is
+   *   none
+   */
+  public abstract int indexOf( CharSequence text, int start, int end,
+    boolean lowerCase );
+
+  /**
+   * Returns the word of an entry.
+   *
+   * @param index  the position of the entry
+   * @return  the word
+   */
+  public abstract String getWord( int index );
+
+  /**
+   * Returns the length of the word of an entry.
+   *
+   * @param index  the position of the entry
+   * @return  the length of the word
+   */
+  public abstract int getWordLength( int index );
+
+  /**
+   * Returns the general weight of an entry.
+   *
+   * @param index  the position of the entry
+   * @return  the general weight
+   */
+  public abstract double getGeneralWeight( int index );
+
+  /**
+   * Returns an emotion weight of an entry.
+   *
+   * @param index  the position of the entry
+   * @param type  the emotion type (one of the type constants of
+   *   {@link Emotion} except {@link Emotion#NEUTRAL})
+   * @return  the weight
+   */
+  public abstract double getWeight( int index, int type );
+
+  /**
+   * Returns the entry at the given position. Modifications of the returned
+   * object don't affect the lexicon.
+   *
+   * @param index  the position of the entry
+   * @return  a new {@link AffectWord} instance
+   */
+  public AffectWord getAffectWord( int index )
+  {
+    return new AffectWord(getWord(index), getGeneralWeight(index),
+      getWeight(index, Emotion.HAPPINESS), getWeight(index, Emotion.SADNESS),
+      getWeight(index, Emotion.ANGER), getWeight(index, Emotion.FEAR),
+      getWeight(index, Emotion.DISGUST), getWeight(index, Emotion.SURPRISE));
+  }
+
+  /**
+   * Looks up the entry for a word.
+   *
+   * @param word  the word to look up
+   * @return  a new {@link AffectWord} instance for <code>word</code> or
+   *   <code>null</code> if it isn't part of the lexicon
+   */
+  public AffectWord getAffectWord( String word )
+  {
+    int i = indexOf(word);
+    return (i >= 0) ? getAffectWord(i) : null;
+  }
+
+  /**
+   * Returns a read-only list view of the lexicon entries.
+   *
+   * @return  the list of entries
+   */
+  public List<AffectWord> asList()
+  {
+    return new ListView();
+  }
+
+  /**
+   * Returns a read-only list view of the lexicon words.
+   *
+   * @return  the list of words
+   */
+  public List<String> getWords()
+  {
+    return new WordListView();
+  }
+
+
+  private class ListView extends AbstractList<AffectWord> implements RandomAccess
+  {
+    @Override
+    public AffectWord get( int index )
+    {
+      return getAffectWord(index);
+    }
+
+    @Override
+    public int size()
+    {
+      return Lexicon.this.size();
+    }
+  }
+
+
+  private class WordListView extends AbstractList<String> implements RandomAccess
+  {
+    @Override
+    public String get( int index )
+    {
+      return getWord(index);
+    }
+
+    @Override
+    public int size()
+    {
+      return Lexicon.this.size();
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package synesketch.emotion.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import synesketch.emotion.Emotion;
+
+
+/**
+ * Compiles lexicon files in the textual format of the Synesketch Lexicon into
+ * lexicon images, which can be memory-mapped by {@link MappedLexicon}.
+ * <p>
+ * Usage: <code>LexiconCompiler &lt;lexicon.txt&gt; &lt;lexicon.bin&gt; [...]</code>
+ */
+public class LexiconCompiler
+{
+  private LexiconCompiler() { }
+
+
+  /**
+   * Writes the image of a lexicon.
+   *
+   * @param lexicon  the lexicon with unadjusted weights
+   * @param out  the output stream to write to
+   * @throws IOException
+   */
+  public static void compile( Lexicon lexicon, OutputStream out )
+    throws IOException
+  {
+    // sorted string pool of the distinct words
+    List<String> words = new ArrayList<String>(lexicon.getWords());
+    TreeMap<String, Integer> pool = new TreeMap<String, Integer>();
+    for (String word : words)
+      pool.put(word, null);
+    int poolLength = 0;
+    for (Map.Entry<String, Integer> e: pool.entrySet()) {
+      e.setValue(poolLength);
+      poolLength += e.getKey().length();
+    }
+
+    int[] slots = new LexiconIndex(words).getSlots();
+
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MappedLexicon.MAGIC);
+    data.writeInt(MappedLexicon.VERSION);
+    data.writeInt(lexicon.size());
+    data.writeInt(slots.length);
+    data.writeInt(poolLength);
+    for (int i = data.size(); i < MappedLexicon.HEADER_SIZE; i++)
+      data.writeByte(0);
+
+    for (int i = 0; i < lexicon.size(); i++) {
+      data.writeInt(pool.get(words.get(i)));
+      data.writeInt(words.get(i).length());
+      data.writeDouble(lexicon.getGeneralWeight(i));
+      data.writeDouble(lexicon.getWeight(i, Emotion.HAPPINESS));
+      data.writeDouble(lexicon.getWeight(i, Emotion.SADNESS));
+      data.writeDouble(lexicon.getWeight(i, Emotion.ANGER));
+      data.writeDouble(lexicon.getWeight(i, Emotion.FEAR));
+      data.writeDouble(lexicon.getWeight(i, Emotion.DISGUST));
+      data.writeDouble(lexicon.getWeight(i, Emotion.SURPRISE));
+    }
+    for (int slot: slots)
+      data.writeInt(slot);
+    for (String word: pool.keySet())
+      data.writeChars(word);
+    data.flush();
+  }
+
+
+  /**
+   * Compiles a lexicon file into a lexicon image file.
+   *
+   * @param source  the path of the lexicon file
+   * @param target  the path of the lexicon image
+   * @throws IOException
+   */
+  public static void compile( Path source, Path target ) throws IOException
+  {
+    Lexicon lexicon = PackedLexicon.parse(Files.newInputStream(source), 1.0);
+    try (OutputStream out = Files.newOutputStream(target)) {
+      compile(lexicon, out);
+    }
+  }
+
+
+  public static void main( String[] args ) throws IOException
+  {
+    if (args.length == 0 || args.length % 2 != 0) {
+      System.err.format(
+        "Usage: %s <lexicon.txt> <lexicon.bin> [<lexicon.txt> <lexicon.bin> ...]%n",
+        LexiconCompiler.class.getName());
+      System.exit(2);
+    }
+    for (int i = 0; i < args.length; i += 2)
+      compile(Paths.get(args[i]), Paths.get(args[i + 1]));
+  }
+}
@@ -0,0 +1,239 @@
+package synesketch.emotion.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * An immutable open-addressing hash table which maps the words of a lexicon
+ * to their position in it.
+ * <p>
+ * The words themselves are stored back to back in a single char pool. The
+ * table is built once from the list of words and uses linear probing on a
+ * power-of-two sized slot array, which is kept at most half full. If a word
+ * occurs more than once, the index of its first occurrence wins, so that
+ * lookups agree with a front-to-back scan of the lexicon.
+ */
+public class LexiconIndex
+{
+  private final char[] pool;
+
+  /** Word <code>i</code> is at <code>pool[offsets[i], offsets[i+1])</code>. */
+  private final int[] offsets;
+
+  /** The word position for every occupied slot and -1 for empty ones. */
+  private final int[] slots;
+
+  private final int mask;
+
+  /**
+   * Builds the index for the given words.
+   *
+   * @param words  the words of the lexicon in lexicon order
+   */
+  public LexiconIndex( List<? extends CharSequence> words )
+  {
+    int size = words.size();
+    offsets = new int[size + 1];
+    for (int i = 0; i < size; i++)
+      offsets[i + 1] = offsets[i] + words.get(i).length();
+    pool = new char[offsets[size]];
+    for (int i = 0; i < size; i++) {
+      CharSequence word = words.get(i);
+      for (int j = 0; j < word.length(); j++)
+        pool[offsets[i] + j] = word.charAt(j);
+    }
+
+    int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+    slots = new int[capacity];
+    Arrays.fill(slots, -1);
+    mask = capacity - 1;
+    for (int i = 0; i < size; i++) {
+      CharSequence word = words.get(i);
+      int slot = hash(word) & mask;
+      while (slots[slot] >= 0 && !wordEquals(slots[slot], word))
+        slot = (slot + 1) & mask;
+      if (slots[slot] < 0)
+        slots[slot] = i;
+    }
+  }
+
+  /**
+   * Returns the number of indexed words.
+   *
+   * @return the number of words
+   */
+  public int size()
+  {
+    return offsets.length - 1;
+  }
+
+  /**
+   * Returns the position of the given word in the lexicon.
+   *
+   * @param word  the word to look up
+   * @return  the position of the first occurrence of <code>word</code> or -1
+   *   if it isn't part of the lexicon
+   */
+  public int indexOf( CharSequence word )
+  {
+    return indexOf(word, 0, word.length(), false);
+  }
+
+  /**
+   * Returns the position of the word <code>text[start, end)</code> in the
+   * lexicon without copying it.
+   *
+   * @param text  the text containing the word
+   * @param start  the start of the word (inclusive)
+   * @param end  the end of the word (exclusive)
+   * @param lowerCase  whether to look up the word converted by
+   *   {@link String#toLowerCase()}
+   * @return  the position of the first occurrence of the word or -1 if it
+   *   isn't part of the lexicon
+   */
+  public int indexOf( CharSequence text, int start, int end, boolean lowerCase )
+  {
+    if (lowerCase) {
+      String word = toLowerCaseIfSpecial(text, start, end);
+      if (word != null)
+        return indexOf(word, 0, word.length(), false);
+    }
+    for (int slot = hash(text, start, end, lowerCase) & mask; slots[slot] >= 0;
+      slot = (slot + 1) & mask)
+    {
+      if (wordEquals(slots[slot], text, start, end, lowerCase))
+        return slots[slot];
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the word at the given position.
+   *
+   * @param index  the position of the word
+   * @return  the word
+   */
+  public String getWord( int index )
+  {
+    return new String(pool, offsets[index], offsets[index + 1] - offsets[index]);
+  }
+
+  /**
+   * Returns the length of the word at the given position.
+   *
+   * @param index  the position of the word
+   * @return  the length of the word
+   */
+  public int getWordLength( int index )
+  {
+    return offsets[index + 1] - offsets[index];
+  }
+
+  private boolean wordEquals( int index, CharSequence word )
+  {
+    return wordEquals(index, word, 0, word.length(), false);
+  }
+
+  private boolean wordEquals( int index, CharSequence text, int start, int end,
+    boolean lowerCase )
+  {
+    int offset = offsets[index];
+    int length = offsets[index + 1] - offset;
+    if (length != end - start)
+      return false;
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(start + i);
+      if (pool[offset + i] != (lowerCase ? Character.toLowerCase(c) : c))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns a copy of the slot table, holding the word position for every
+   * occupied slot and -1 for every empty one.
+   *
+   * @return  the slot table
+   */
+  int[] getSlots()
+  {
+    return slots.clone();
+  }
+
+  /**
+   * Computes the hash of a word, which is stable across JVM instances.
+   *
+   * @param word  the word
+   * @return  the hash value
+   */
+  static int hash( CharSequence word )
+  {
+    return hash(word, 0, word.length(), false);
+  }
+
+  /**
+   * Converts the word <code>text[start, end)</code> by
+   * {@link String#toLowerCase()} if converting its characters one by one by
+   * {@link Character#toLowerCase(char)} might give a different result, which
+   * happens for the capital I with dot above (U+0130), which becomes two
+   * characters, the capital sigma, whose lower case depends on its position,
+   * supplementary characters, and in the Turkish, Azeri and Lithuanian
+   * default locales.
+   *
+   * @param text  the text containing the word
+   * @param start  the start of the word (inclusive)
+   * @param end  the end of the word (exclusive)
+   * @return  the word in lower case, or <code>null</code> if it can be
+   *   converted character by character
+   */
+  static String toLowerCaseIfSpecial( CharSequence text, int start, int end )
+  {
+    boolean special = isLocaleSpecific(Locale.getDefault());
+    for (int i = start; i < end && !special; i++) {
+      char c = text.charAt(i);
+      special = c == '\u0130' || c == '\u03a3' || Character.isSurrogate(c);
+    }
+    return special ?
+      text.subSequence(start, end).toString().toLowerCase() :
+      null;
+  }
+
+  private static boolean isLocaleSpecific( Locale locale )
+  {
+    String language = locale.getLanguage();
+    return language.equals("tr") || language.equals("az") ||
+      language.equals("lt");
+  }
+
+  /**
+   * Computes the hash of the word <code>text[start, end)</code>, which is
+   * stable across JVM instances. If <code>lowerCase</code> is set, the hash
+   * is that of the word with every character converted by
+   * {@link Character#toLowerCase(char)}, which agrees with
+   * {@link String#toLowerCase()} unless
+   * {@link #toLowerCaseIfSpecial(CharSequence, int, int)} converts the word.
+   *
+   * @param text  the text containing the word
+   * @param start  the start of the word (inclusive)
+   * @param end  the end of the word (exclusive)
+   * @param lowerCase  whether to convert the characters to lower case
+   * @return  the hash value
+   */
+  static int hash( CharSequence text, int start, int end, boolean lowerCase )
+  {
+    int h;
+    if (!lowerCase && start == 0 && text instanceof String && end == text.length()) {
+      h = text.hashCode();
+    } else {
+      h = 0;
+      for (int i = start; i < end; i++) {
+        char c = text.charAt(i);
+        h = 31 * h + (lowerCase ? Character.toLowerCase(c) : c);
+      }
+    }
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
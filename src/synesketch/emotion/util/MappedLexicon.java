@@ -0,0 +1,215 @@
+package synesketch.emotion.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import synesketch.emotion.Emotion;
+
+
+/**
+ * A {@link Lexicon} which reads its entries straight from a memory-mapped
+ * lexicon image, as written by {@link LexiconCompiler}.
+ * <p>
+ * Nothing but the mapping itself is allocated at load time: lookups probe the
+ * prebuilt hash index and compare words in the string pool of the image, and
+ * {@link synesketch.emotion.AffectWord} instances are only created for the
+ * entries asked for.
+ * Since the image is mapped read-only, all processes using the same file share
+ * one copy of it in the page cache.
+ * <p>
+ * The image layout (big-endian) is:
+ * <ol>
+ * <li>a header of {@value #HEADER_SIZE} bytes: magic number, format version,
+ * entry count, hash slot count, string pool length (in chars), padding;
+ * <li>one record of {@value #RECORD_SIZE} bytes per entry in lexicon order:
+ * offset and length of the word in the string pool, followed by the general,
+ * happiness, sadness, anger, fear, disgust and surprise weights as doubles;
+ * <li>the hash slots, each holding an entry position or -1 for empty slots,
+ * probed linearly starting at {@link LexiconIndex#hash(CharSequence)};
+ * <li>the string pool, the sorted distinct words as UTF-16 chars.
+ * </ol>
+ */
+public class MappedLexicon extends Lexicon
+{
+  static final int MAGIC = 0x53594E4C; // "SYNL"
+
+  static final int VERSION = 1;
+
+  static final int HEADER_SIZE = 32;
+
+  static final int RECORD_SIZE = 2 * 4 + 7 * 8;
+
+  static final int WEIGHT_COUNT = 7;
+
+  /** The record column of the weight for each emotion type. */
+  private static final int[] TYPE_COLUMNS = new int[6];
+  static {
+    TYPE_COLUMNS[Emotion.HAPPINESS] = 1;
+    TYPE_COLUMNS[Emotion.SADNESS] = 2;
+    TYPE_COLUMNS[Emotion.ANGER] = 3;
+    TYPE_COLUMNS[Emotion.FEAR] = 4;
+    TYPE_COLUMNS[Emotion.DISGUST] = 5;
+    TYPE_COLUMNS[Emotion.SURPRISE] = 6;
+  }
+
+  private final ByteBuffer records;
+
+  private final IntBuffer slots;
+
+  private final CharBuffer pool;
+
+  private final int size;
+
+  private final double coefficient;
+
+
+  /**
+   * Class constructor which reads a lexicon image from a buffer.
+   *
+   * @param image  the lexicon image
+   * @param coefficient  the coefficient all weights are adjusted by when an
+   *   entry is materialised
+   * @throws IOException  if the buffer doesn't contain a valid lexicon image
+   */
+  public MappedLexicon( ByteBuffer image, double coefficient ) throws IOException
+  {
+    image = image.duplicate().order(ByteOrder.BIG_ENDIAN);
+    if (image.remaining() < HEADER_SIZE || image.getInt(0) != MAGIC)
+      throw new IOException("Not a lexicon image");
+    if (image.getInt(4) != VERSION)
+      throw new IOException("Unsupported lexicon image version: " + image.getInt(4));
+
+    size = image.getInt(8);
+    int slotCount = image.getInt(12);
+    int poolLength = image.getInt(16);
+    if (Integer.bitCount(slotCount) != 1 ||
+      image.remaining() < HEADER_SIZE + (long) size * RECORD_SIZE + slotCount * 4L + poolLength * 2L)
+    {
+      throw new IOException("Truncated or corrupt lexicon image");
+    }
+
+    records = slice(image, HEADER_SIZE, size * RECORD_SIZE);
+    int slotsStart = HEADER_SIZE + size * RECORD_SIZE;
+    slots = slice(image, slotsStart, slotCount * 4).asIntBuffer();
+    pool = slice(image, slotsStart + slotCount * 4, poolLength * 2).asCharBuffer();
+    this.coefficient = coefficient;
+  }
+
+
+  /**
+   * Maps a lexicon image file into memory.
+   *
+   * @param file  the path of the lexicon image
+   * @param coefficient  the coefficient all weights are adjusted by when an
+   *   entry is materialised
+   * @return  the mapped lexicon
+   * @throws IOException
+   */
+  public static MappedLexicon map( Path file, double coefficient ) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return new MappedLexicon(
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()),
+        coefficient);
+    }
+  }
+
+
+  private static ByteBuffer slice( ByteBuffer image, int offset, int length )
+  {
+    ByteBuffer b = image.duplicate();
+    b.limit(offset + length).position(offset);
+    return b.slice().order(image.order());
+  }
+
+
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  @Override
+  public int indexOf( CharSequence text, int start, int end, boolean lowerCase )
+  {
+    if (lowerCase) {
+      String word = LexiconIndex.toLowerCaseIfSpecial(text, start, end);
+      if (word != null)
+        return indexOf(word, 0, word.length(), false);
+    }
+    int mask = slots.limit() - 1;
+    for (int slot = LexiconIndex.hash(text, start, end, lowerCase) & mask; ;
+      slot = (slot + 1) & mask)
+    {
+      int i = slots.get(slot);
+      if (i < 0)
+        return -1;
+      if (wordEquals(i, text, start, end, lowerCase))
+        return i;
+    }
+  }
+
+  private boolean wordEquals( int index, CharSequence text, int start, int end,
+    boolean lowerCase )
+  {
+    int offset = records.getInt(index * RECORD_SIZE);
+    int length = records.getInt(index * RECORD_SIZE + 4);
+    if (length != end - start)
+      return false;
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(start + i);
+      if (pool.get(offset + i) != (lowerCase ? Character.toLowerCase(c) : c))
+        return false;
+    }
+    return true;
+  }
+
+  @Override
+  public String getWord( int index )
+  {
+    int offset = records.getInt(index * RECORD_SIZE);
+    int length = getWordLength(index);
+    char[] word = new char[length];
+    for (int i = 0; i < length; i++)
+      word[i] = pool.get(offset + i);
+    return new String(word);
+  }
+
+  @Override
+  public int getWordLength( int index )
+  {
+    return records.getInt(index * RECORD_SIZE + 4);
+  }
+
+  /**
+   * Returns a weight of an entry as stored in the image, i. e. not adjusted
+   * by the coefficient.
+   *
+   * @param index  the position of the entry
+   * @param weight  the weight number: 0 for the general weight, 1 to 6 for
+   *   happiness, sadness, anger, fear, disgust and surprise
+   * @return  the weight
+   */
+  public double getRawWeight( int index, int weight )
+  {
+    return records.getDouble(index * RECORD_SIZE + 8 + weight * 8);
+  }
+
+  @Override
+  public double getGeneralWeight( int index )
+  {
+    return getRawWeight(index, 0) * coefficient;
+  }
+
+  @Override
+  public double getWeight( int index, int type )
+  {
+    return getRawWeight(index, TYPE_COLUMNS[type]) * coefficient;
+  }
+}
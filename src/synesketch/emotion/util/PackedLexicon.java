@@ -0,0 +1,124 @@
+package synesketch.emotion.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import synesketch.emotion.Emotion;
+
+
+/**
+ * A {@link Lexicon} which keeps all of its data in a few primitive arrays
+ * instead of one {@link synesketch.emotion.AffectWord} object per entry.
+ * <p>
+ * The weights of all entries are stored in one contiguous <code>double</code>
+ * array with {@value #STRIDE} slots per entry: the general weight followed by
+ * the six Ekman weights, ordered by their {@link Emotion} type constants. The
+ * words are kept in the char pool of a {@link LexiconIndex}.
+ */
+public class PackedLexicon extends Lexicon
+{
+  /** The number of weights per entry. */
+  public static final int STRIDE = 7;
+
+  private static final Pattern FIELD_SPLIT_PATTERN = Pattern.compile(" ");
+
+  private final LexiconIndex index;
+
+  private final double[] weights;
+
+
+  private PackedLexicon( LexiconIndex index, double[] weights )
+  {
+    this.index = index;
+    this.weights = weights;
+  }
+
+
+  /**
+   * Parses a lexicon in the textual format of the Synesketch Lexicon.
+   *
+   * @param in  the stream to read the lexicon from; it is closed afterwards
+   * @param coefficient  the coefficient all weights are adjusted by
+   * @return  the parsed lexicon
+   * @throws IOException
+   */
+  public static PackedLexicon parse( InputStream in, double coefficient )
+    throws IOException
+  {
+    List<String> words = new ArrayList<String>();
+    double[] weights = new double[STRIDE * 1024];
+    try (BufferedReader reader =
+      new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)))
+    {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = FIELD_SPLIT_PATTERN.split(line);
+        int base = words.size() * STRIDE;
+        if (base + STRIDE > weights.length)
+          weights = Arrays.copyOf(weights, weights.length * 2);
+        words.add(fields[0]);
+        weights[base] = Double.parseDouble(fields[1]) * coefficient;
+        weights[base + 1 + Emotion.HAPPINESS] = Double.parseDouble(fields[2]) * coefficient;
+        weights[base + 1 + Emotion.SADNESS] = Double.parseDouble(fields[3]) * coefficient;
+        weights[base + 1 + Emotion.ANGER] = Double.parseDouble(fields[4]) * coefficient;
+        weights[base + 1 + Emotion.FEAR] = Double.parseDouble(fields[5]) * coefficient;
+        weights[base + 1 + Emotion.DISGUST] = Double.parseDouble(fields[6]) * coefficient;
+        weights[base + 1 + Emotion.SURPRISE] = Double.parseDouble(fields[7]) * coefficient;
+      }
+    }
+    return new PackedLexicon(new LexiconIndex(words),
+      Arrays.copyOf(weights, words.size() * STRIDE));
+  }
+
+
+  @Override
+  public int size()
+  {
+    return index.size();
+  }
+
+  @Override
+  public int indexOf( CharSequence text, int start, int end, boolean lowerCase )
+  {
+    return index.indexOf(text, start, end, lowerCase);
+  }
+
+  @Override
+  public String getWord( int index )
+  {
+    return this.index.getWord(index);
+  }
+
+  @Override
+  public int getWordLength( int index )
+  {
+    return this.index.getWordLength(index);
+  }
+
+  @Override
+  public double getGeneralWeight( int index )
+  {
+    checkIndex(index);
+    return weights[index * STRIDE];
+  }
+
+  @Override
+  public double getWeight( int index, int type )
+  {
+    checkIndex(index);
+    return weights[index * STRIDE + 1 + type];
+  }
+
+  private void checkIndex( int index )
+  {
+    if (index < 0 || index >= size())
+      throw new IndexOutOfBoundsException(String.valueOf(index));
+  }
+}
@@ -42,9 +42,24 @@ public class ParsingUtility {
 	 *         sentences
 	 */
 	public static ArrayList<String> parseSentences(String text) {
+		return parseSentences(text, BreakIterator.getSentenceInstance());
+	}
+
+	/**
+	 * Pareses text into sentences using the given sentence boundary iterator,
+	 * so that it can be reused across calls.
+	 * 
+	 * @param text
+	 *            {@link String} which represents the text
+	 * @param boundary
+	 *            {@link BreakIterator} for sentence boundaries
+	 * @return {@link ArrayList} of {@link String} instances representing the
+	 *         sentences
+	 */
+	public static ArrayList<String> parseSentences(String text,
+			BreakIterator boundary) {
 		ArrayList<String> value = new ArrayList<String>();
 
-		BreakIterator boundary = BreakIterator.getSentenceInstance();
 		boundary.setText(text);
 		int start = boundary.first();
 		for (int end = boundary.next(); end != BreakIterator.DONE; start = end, end = boundary
@@ -64,9 +79,24 @@ public static ArrayList<String> parseSentences(String text) {
 	 *         words
 	 */
 	public static ArrayList<String> parseWords(String text) {
+		return parseWords(text, BreakIterator.getWordInstance());
+	}
+
+	/**
+	 * Pareses sentences into words using the given word boundary iterator, so
+	 * that it can be reused across calls.
+	 * 
+	 * @param text
+	 *            {@link String} which represents the sentence
+	 * @param boundary
+	 *            {@link BreakIterator} for word boundaries
+	 * @return {@link ArrayList} of {@link String} instances representing the
+	 *         words
+	 */
+	public static ArrayList<String> parseWords(String text,
+			BreakIterator boundary) {
 		ArrayList<String> value = new ArrayList<String>();
 
-		BreakIterator boundary = BreakIterator.getWordInstance();
 		boundary.setText(text);
 		int start = boundary.first();
 		for (int end = boundary.next(); end != BreakIterator.DONE; start = end, end = boundary
@@ -0,0 +1,162 @@
+package synesketch.emotion.util;
+
+import java.util.Arrays;
+
+
+/**
+ * A reusable extractor of the sentence features the heuristic rules depend
+ * on: whether a sentence contains a negation, the number of exclamation
+ * marks in it and, for each of its tokens, whether it is upper case and
+ * whether it is an intensity modifier.
+ * <p>
+ * The features are computed in a single pass over the characters of a
+ * sentence of the last text of a {@link Tokenizer}. Negations are found with
+ * a {@link KeywordAutomaton}, which is fed the lower case characters, so that
+ * the sentence isn't copied. Intensity modifiers are looked up in place.
+ * <p>
+ * The buffers grow as needed and are reused by later calls to
+ * {@link #extract(Tokenizer, int)}. Instances aren't thread-safe.
+ */
+public class SentenceFeatures
+{
+  private final LexicalUtility lexUtil;
+
+  private final KeywordAutomaton negations;
+
+  private final TextSpan token = new TextSpan();
+
+  private boolean negation = false;
+
+  private int exclaminations = 0;
+
+  private int firstToken = 0, endToken = 0;
+
+  private boolean[] capsLock = new boolean[32];
+
+  private boolean[] intensityModifiers = new boolean[32];
+
+
+  /**
+   * Class constructor.
+   *
+   * @param lexUtil  the {@link LexicalUtility} which defines the negations and
+   *   intensity modifiers
+   */
+  public SentenceFeatures( LexicalUtility lexUtil )
+  {
+    this.lexUtil = lexUtil;
+    this.negations = lexUtil.getNegationMatcher();
+  }
+
+
+  /**
+   * Computes the features of a sentence, replacing those of the previous
+   * call.
+   *
+   * @param tokenizer  the tokenizer of the text
+   * @param sentence  the sentence index
+   */
+  public void extract( Tokenizer tokenizer, int sentence )
+  {
+    CharSequence text = tokenizer.getText();
+    int end = tokenizer.getSentenceEnd(sentence);
+    firstToken = tokenizer.getFirstToken(sentence);
+    endToken = tokenizer.getEndToken(sentence);
+    int tokenCount = endToken - firstToken;
+    if (tokenCount > capsLock.length) {
+      int capacity = Math.max(capsLock.length * 2, tokenCount);
+      capsLock = new boolean[capacity];
+      intensityModifiers = new boolean[capacity];
+    }
+    Arrays.fill(capsLock, 0, tokenCount, true);
+
+    int state = KeywordAutomaton.START;
+    boolean negation = negations.endsKeyword(state);
+    int exclaminations = 0;
+    int t = firstToken;
+    int tokenStart = (t < endToken) ? tokenizer.getTokenStart(t) : end;
+    int tokenEnd = (t < endToken) ? tokenizer.getTokenEnd(t) : end;
+    for (int i = tokenizer.getSentenceStart(sentence); i < end; i++) {
+      char c = text.charAt(i);
+      if (c == '!')
+        exclaminations++;
+      if (!negation) {
+        state = negations.next(state, Character.toLowerCase(c));
+        negation = negations.endsKeyword(state);
+      }
+
+      // tokens are ordered and don't overlap
+      while (i >= tokenEnd) {
+        if (++t < endToken) {
+          tokenStart = tokenizer.getTokenStart(t);
+          tokenEnd = tokenizer.getTokenEnd(t);
+        } else {
+          tokenStart = tokenEnd = end;
+        }
+      }
+      if (i >= tokenStart && i < tokenEnd && Character.isLowerCase(c))
+        capsLock[t - firstToken] = false;
+    }
+    this.negation = negation;
+    this.exclaminations = exclaminations;
+
+    // emoticons are never intensity modifiers
+    for (t = firstToken; t < endToken; t++) {
+      intensityModifiers[t - firstToken] = tokenizer.getTokenEmoticon(t) < 0 &&
+        lexUtil.isIntensityModifier(tokenizer.getToken(t, token));
+    }
+  }
+
+
+  /**
+   * Returns whether the sentence contains a negation, ignoring case. Like
+   * {@link LexicalUtility#hasNegation(String)} negations are found anywhere,
+   * not only as whole words.
+   *
+   * @return  <code>true</code> if the sentence contains a negation
+   */
+  public boolean hasNegation()
+  {
+    return negation;
+  }
+
+  /**
+   * Returns the number of exclamation marks in the sentence.
+   *
+   * @return  the number of '!' characters
+   */
+  public int getExclaminationCount()
+  {
+    return exclaminations;
+  }
+
+  /**
+   * Returns whether a token of the sentence has no lower case letters.
+   *
+   * @param token  the token index
+   * @return  <code>true</code> if the token is upper case
+   */
+  public boolean isCapsLock( int token )
+  {
+    return capsLock[checkToken(token)];
+  }
+
+  /**
+   * Returns whether a token of the sentence is an intensity modifier.
+   *
+   * @param token  the token index
+   * @return  <code>true</code> if the token is an intensity modifier
+   */
+  public boolean isIntensityModifier( int token )
+  {
+    return intensityModifiers[checkToken(token)];
+  }
+
+
+  private int checkToken( int token )
+  {
+    if (token < firstToken || token >= endToken)
+      throw new IndexOutOfBoundsException(String.valueOf(token));
+    return token - firstToken;
+  }
+}
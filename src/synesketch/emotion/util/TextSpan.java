@@ -0,0 +1,105 @@
+package synesketch.emotion.util;
+
+
+/**
+ * A mutable {@link CharSequence} view of a range of another character
+ * sequence. It can be pointed at one token after another, so that tokens can
+ * be inspected and looked up without copying them into strings.
+ * <p>
+ * The view reflects later changes of the underlying sequence (if it is
+ * mutable). Instances aren't thread-safe.
+ */
+public final class TextSpan implements CharSequence
+{
+  private CharSequence text = "";
+
+  private int start = 0, end = 0;
+
+
+  /**
+   * Class constructor for an empty span.
+   */
+  public TextSpan()
+  {
+  }
+
+  /**
+   * Class constructor for a span of the given text.
+   *
+   * @param text  the underlying text
+   * @param start  the start of the span (inclusive)
+   * @param end  the end of the span (exclusive)
+   */
+  public TextSpan( CharSequence text, int start, int end )
+  {
+    set(text, start, end);
+  }
+
+
+  /**
+   * Points this view at a range of a text.
+   *
+   * @param text  the underlying text
+   * @param start  the start of the span (inclusive)
+   * @param end  the end of the span (exclusive)
+   * @return  this instance
+   */
+  public TextSpan set( CharSequence text, int start, int end )
+  {
+    if (start < 0 || start > end || end > text.length())
+      throw new IndexOutOfBoundsException(start + ", " + end);
+    this.text = text;
+    this.start = start;
+    this.end = end;
+    return this;
+  }
+
+  public CharSequence getText()
+  {
+    return text;
+  }
+
+  public int getStart()
+  {
+    return start;
+  }
+
+  public int getEnd()
+  {
+    return end;
+  }
+
+
+  @Override
+  public int length()
+  {
+    return end - start;
+  }
+
+  @Override
+  public char charAt( int index )
+  {
+    if (index < 0 || index >= end - start)
+      throw new IndexOutOfBoundsException(String.valueOf(index));
+    return text.charAt(start + index);
+  }
+
+  @Override
+  public CharSequence subSequence( int start, int end )
+  {
+    if (start < 0 || start > end || end > this.end - this.start)
+      throw new IndexOutOfBoundsException(start + ", " + end);
+    return new TextSpan(text, this.start + start, this.start + end);
+  }
+
+  /**
+   * Copies the characters of this span into a new string.
+   *
+   * @return  a new {@link String}
+   */
+  @Override
+  public String toString()
+  {
+    return text.subSequence(start, end).toString();
+  }
+}
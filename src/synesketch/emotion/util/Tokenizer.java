@@ -0,0 +1,479 @@
+package synesketch.emotion.util;
+
+import java.text.BreakIterator;
+import java.util.Arrays;
+
+
+/**
+ * A reusable tokenizer which splits a text into sentences and tokens in a
+ * single pass, recording their boundaries as offsets into the text.
+ * <p>
+ * Sentence and token boundaries are those of the sentence and word
+ * {@link java.text.BreakIterator} of the default locale, applied to the
+ * whitespace-separated chunks of every sentence: a token is a run of letters
+ * and digits, which may contain single inner punctuation marks like
+ * apostrophes or periods (e.g. <code>don't</code> or <code>1,000</code>), a
+ * number with its prefix or suffix sign (e.g. <code>$5</code> or
+ * <code>50%</code>), or a single other character. A chunk which starts with
+ * an emoticon is a single token, which is tagged with that emoticon.
+ * <p>
+ * The offset buffers grow as needed and are reused by later calls to
+ * {@link #tokenize(CharSequence)}, so that tokenizing doesn't allocate once
+ * they are large enough. Sentences and tokens can be viewed through a
+ * reusable {@link TextSpan}. The tokenizer refers to the last text until the
+ * next call. Instances aren't thread-safe.
+ */
+public class Tokenizer
+{
+  private final KeywordAutomaton emoticons;
+
+  private final BreakIterator sentenceBoundary = BreakIterator.getSentenceInstance();
+
+  private int sentenceCount = 0;
+
+  private int[] sentenceStarts = new int[8];
+
+  private int[] sentenceEnds = new int[8];
+
+  /** The tokens of sentence <code>i</code> are <code>[sentenceTokens[i], sentenceTokens[i+1])</code>. */
+  private int[] sentenceTokens = new int[9];
+
+  private int tokenCount = 0;
+
+  private int[] tokenStarts = new int[64];
+
+  private int[] tokenEnds = new int[64];
+
+  private int[] tokenEmoticons = new int[64];
+
+  private CharSequence text;
+
+
+  /**
+   * Class constructor.
+   *
+   * @param emoticons  the automaton which recognises emoticons at the start of
+   *   a chunk, or <code>null</code> to tokenize emoticons like other text
+   */
+  public Tokenizer( KeywordAutomaton emoticons )
+  {
+    this.emoticons = emoticons;
+  }
+
+
+  /**
+   * Splits a text into sentences and tokens, replacing the results of the
+   * previous call.
+   *
+   * @param text  the text
+   */
+  public void tokenize( CharSequence text )
+  {
+    this.text = text;
+    sentenceCount = 0;
+    tokenCount = 0;
+    sentenceBoundary.setText(text.toString());
+    int start = sentenceBoundary.first();
+    for (int end = sentenceBoundary.next(); end != BreakIterator.DONE;
+      start = end, end = sentenceBoundary.next())
+    {
+      addSentence(start, end);
+    }
+  }
+
+
+  /**
+   * Returns the last text.
+   *
+   * @return  the text passed to the last call of
+   *   {@link #tokenize(CharSequence)}, or <code>null</code>
+   */
+  public CharSequence getText()
+  {
+    return text;
+  }
+
+  public int getSentenceCount()
+  {
+    return sentenceCount;
+  }
+
+  public int getSentenceStart( int sentence )
+  {
+    return sentenceStarts[checkIndex(sentence, sentenceCount)];
+  }
+
+  public int getSentenceEnd( int sentence )
+  {
+    return sentenceEnds[checkIndex(sentence, sentenceCount)];
+  }
+
+  /**
+   * Points a span at a sentence of the last text.
+   *
+   * @param sentence  the sentence index
+   * @param span  the span to set
+   * @return  <code>span</code>
+   */
+  public TextSpan getSentence( int sentence, TextSpan span )
+  {
+    return span.set(text, getSentenceStart(sentence), getSentenceEnd(sentence));
+  }
+
+  /**
+   * Returns the index of the first token of a sentence.
+   *
+   * @param sentence  the sentence index
+   * @return  the token index
+   */
+  public int getFirstToken( int sentence )
+  {
+    return sentenceTokens[checkIndex(sentence, sentenceCount)];
+  }
+
+  /**
+   * Returns the index after the last token of a sentence.
+   *
+   * @param sentence  the sentence index
+   * @return  the token index
+   */
+  public int getEndToken( int sentence )
+  {
+    return sentenceTokens[checkIndex(sentence, sentenceCount) + 1];
+  }
+
+  public int getTokenCount()
+  {
+    return tokenCount;
+  }
+
+  public int getTokenStart( int token )
+  {
+    return tokenStarts[checkIndex(token, tokenCount)];
+  }
+
+  public int getTokenEnd( int token )
+  {
+    return tokenEnds[checkIndex(token, tokenCount)];
+  }
+
+  /**
+   * Points a span at a token of the last text.
+   *
+   * @param token  the token index
+   * @param span  the span to set
+   * @return  <code>span</code>
+   */
+  public TextSpan getToken( int token, TextSpan span )
+  {
+    return span.set(text, getTokenStart(token), getTokenEnd(token));
+  }
+
+  /**
+   * Returns the emoticon a token starts with.
+   *
+   * @param token  the token index
+   * @return  the position of the emoticon in the keyword list of the emoticon
+   *   automaton or -1 if the token isn't an emoticon
+   */
+  public int getTokenEmoticon( int token )
+  {
+    return tokenEmoticons[checkIndex(token, tokenCount)];
+  }
+
+
+  private void addSentence( int start, int end )
+  {
+    if (sentenceCount == sentenceStarts.length) {
+      int capacity = sentenceCount * 2;
+      sentenceStarts = Arrays.copyOf(sentenceStarts, capacity);
+      sentenceEnds = Arrays.copyOf(sentenceEnds, capacity);
+      sentenceTokens = Arrays.copyOf(sentenceTokens, capacity + 1);
+    }
+    sentenceStarts[sentenceCount] = start;
+    sentenceEnds[sentenceCount] = end;
+    sentenceTokens[sentenceCount] = tokenCount;
+
+    // whitespace-separated chunks; those starting with an emoticon are a
+    // single token
+    CharSequence text = this.text;
+    for (int i = start; i < end; ) {
+      if (isChunkSpace(text.charAt(i))) {
+        i++;
+        continue;
+      }
+      int chunkEnd = i + 1;
+      while (chunkEnd < end && !isChunkSpace(text.charAt(chunkEnd)))
+        chunkEnd++;
+      int emoticon = (emoticons != null) ? emoticons.findPrefix(text, i, chunkEnd) : -1;
+      if (emoticon >= 0) {
+        addToken(i, chunkEnd, emoticon);
+      } else {
+        while (i < chunkEnd) {
+          int tokenEnd = findTokenEnd(i, chunkEnd);
+          addToken(i, tokenEnd, -1);
+          i = tokenEnd;
+        }
+      }
+      i = chunkEnd;
+    }
+
+    sentenceCount++;
+    sentenceTokens[sentenceCount] = tokenCount;
+  }
+
+  private void addToken( int start, int end, int emoticon )
+  {
+    if (tokenCount == tokenStarts.length) {
+      int capacity = tokenCount * 2;
+      tokenStarts = Arrays.copyOf(tokenStarts, capacity);
+      tokenEnds = Arrays.copyOf(tokenEnds, capacity);
+      tokenEmoticons = Arrays.copyOf(tokenEmoticons, capacity);
+    }
+    tokenStarts[tokenCount] = start;
+    tokenEnds[tokenCount] = end;
+    tokenEmoticons[tokenCount] = emoticon;
+    tokenCount++;
+  }
+
+
+  private int findTokenEnd( int start, int end )
+  {
+    // format characters are transparent and belong to the adjacent token
+    int p = skipIgnorable(start, end);
+    if (p == end)
+      return end;
+    char c = text.charAt(p);
+
+    // contiguous words and numbers, with an optional number suffix
+    int i = scanWordsAndNumbers(p, end, true);
+
+    // a number prefix followed by contiguous numbers and words
+    if (i == p && isNumberPrefix(c)) {
+      int n = skipIgnorable(p + 1, end);
+      i = scanWordsAndNumbers(n, end, false);
+      if (i == n)
+        i = p;
+    }
+
+    if (i == p)
+      i = scanOther(p, end, c);
+    return skipIgnorable(i, end);
+  }
+
+  private int scanOther( int i, int end, char c )
+  {
+    CharSequence text = this.text;
+    int type = Character.getType(c);
+    if (type == Character.SPACE_SEPARATOR || c == '\t') {
+      // whitespace with an optional line separator
+      i = skipMarks(i + 1, end);
+      while (i < end &&
+        (Character.getType(text.charAt(i)) == Character.SPACE_SEPARATOR || text.charAt(i) == '\t'))
+      {
+        i = skipMarks(i + 1, end);
+      }
+      if (i < end && text.charAt(i) == '\r')
+        i = skipIgnorable(i + 1, end);
+      if (i < end && isLineSeparator(text.charAt(i)))
+        i++;
+      return i;
+    }
+
+    // runs of kana (with the diacritics shared by both kinds) or kanji; a
+    // single one of them may carry enclosing marks instead
+    if (isKatakana(c) || isHiragana(c) || isCjkDiacritic(c)) {
+      return Math.max(skipMarks(i + 1, end),
+        Math.max(isHiragana(c) ? i : scanKana(i, end, true),
+          isKatakana(c) ? i : scanKana(i, end, false)));
+    }
+    if (isKanji(c)) {
+      int run = i;
+      do {
+        run = skipIgnorable(run + 1, end);
+      } while (run < end && isKanji(text.charAt(run)));
+      return Math.max(run, skipMarks(i + 1, end));
+    }
+
+    // anything else is a token of its own, along with its enclosing marks
+    int next = i + 1;
+    if (Character.isHighSurrogate(c) && next < end && Character.isLowSurrogate(text.charAt(next)))
+      next++;
+    switch (type) {
+    case Character.NON_SPACING_MARK:
+    case Character.ENCLOSING_MARK:
+    case Character.CONTROL:
+    case Character.FORMAT:
+    case Character.LINE_SEPARATOR:
+    case Character.PARAGRAPH_SEPARATOR:
+      return next;
+    default:
+      return skipMarks(next, end);
+    }
+  }
+
+  private int scanKana( int i, int end, boolean katakana )
+  {
+    while (i < end && (isCjkDiacritic(text.charAt(i)) ||
+      (katakana ? isKatakana(text.charAt(i)) : isHiragana(text.charAt(i)))))
+    {
+      i = skipIgnorable(i + 1, end);
+    }
+    return i;
+  }
+
+  /**
+   * Scans <code>{word}(number word)*{number{suffix}}</code>, or
+   * <code>(number word)*{number{suffix}}</code> if words may not lead.
+   */
+  private int scanWordsAndNumbers( int i, int end, boolean wordFirst )
+  {
+    if (wordFirst)
+      i = scanRun(i, end, false);
+    for (;;) {
+      int n = scanRun(i, end, true);
+      if (n == i)
+        return i;
+      int w = scanRun(n, end, false);
+      if (w == n) {
+        if (n < end && isNumberSuffix(text.charAt(n)))
+          n = skipIgnorable(n + 1, end);
+        return n;
+      }
+      i = w;
+    }
+  }
+
+  /**
+   * Scans a run of letters (or digits), which may contain single inner
+   * punctuation marks.
+   */
+  private int scanRun( int i, int end, boolean digits )
+  {
+    CharSequence text = this.text;
+    if (i >= end || !isRunChar(text.charAt(i), digits))
+      return i;
+    i = skipMarks(i + 1, end);
+    for (;;) {
+      while (i < end && isRunChar(text.charAt(i), digits))
+        i = skipMarks(i + 1, end);
+      if (i < end && (digits ? isMidNumber(text.charAt(i)) : isMidWord(text.charAt(i)))) {
+        int n = skipIgnorable(i + 1, end);
+        if (n < end && isRunChar(text.charAt(n), digits)) {
+          i = n;
+          continue;
+        }
+      }
+      return i;
+    }
+  }
+
+  /**
+   * Skips enclosing and non-spacing marks as well as ignorable format
+   * characters.
+   */
+  private int skipMarks( int i, int end )
+  {
+    while (i < end && (isMark(text.charAt(i)) || isIgnorable(text.charAt(i))))
+      i++;
+    return i;
+  }
+
+  private int skipIgnorable( int i, int end )
+  {
+    while (i < end && isIgnorable(text.charAt(i)))
+      i++;
+    return i;
+  }
+
+
+  private static int checkIndex( int index, int count )
+  {
+    if (index < 0 || index >= count)
+      throw new IndexOutOfBoundsException(String.valueOf(index));
+    return index;
+  }
+
+  private static boolean isChunkSpace( char c )
+  {
+    // the same as \s in regular expressions
+    return c == ' ' || (c >= '\t' && c <= '\r');
+  }
+
+  private static boolean isMark( char c )
+  {
+    int type = Character.getType(c);
+    return type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK;
+  }
+
+  private static boolean isIgnorable( char c )
+  {
+    // the soft hyphen is a format character, but may also join words
+    return Character.getType(c) == Character.FORMAT && c != '\u00ad';
+  }
+
+  private static boolean isNumber( char c )
+  {
+    int type = Character.getType(c);
+    return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER ||
+      type == Character.OTHER_NUMBER;
+  }
+
+  private static boolean isRunChar( char c, boolean digits )
+  {
+    if (digits)
+      return isNumber(c);
+    return (Character.isLetter(c) || Character.getType(c) == Character.COMBINING_SPACING_MARK) &&
+      !isKanji(c) && !isKatakana(c) && !isHiragana(c) && !isCjkDiacritic(c);
+  }
+
+  private static boolean isMidWord( char c )
+  {
+    if (c == '"' || c == '\'' || c == '.' || c == '\u00ad' || c == '\u2027')
+      return true;
+    int type = Character.getType(c);
+    return type == Character.DASH_PUNCTUATION || type == Character.CONNECTOR_PUNCTUATION;
+  }
+
+  private static boolean isMidNumber( char c )
+  {
+    return c == '"' || c == '\'' || c == ',' || c == '.' || c == '\u066b';
+  }
+
+  private static boolean isNumberPrefix( char c )
+  {
+    return c == '#' || c == '.' ||
+      (Character.getType(c) == Character.CURRENCY_SYMBOL && c != '\u00a2');
+  }
+
+  private static boolean isNumberSuffix( char c )
+  {
+    return c == '%' || c == '&' || c == '\u00a2' || c == '\u066a' || c == '\u2030' ||
+      c == '\u2031';
+  }
+
+  private static boolean isLineSeparator( char c )
+  {
+    return c == '\n' || c == '\f' || c == '\u2028' || c == '\u2029';
+  }
+
+  private static boolean isKanji( char c )
+  {
+    return c == '\u3005' || (c >= '\u4e00' && c <= '\u9fa5') || (c >= '\uf900' && c <= '\ufa2d');
+  }
+
+  private static boolean isKatakana( char c )
+  {
+    return (c >= '\u30a1' && c <= '\u30fa') || c == '\u30fd' || c == '\u30fe';
+  }
+
+  private static boolean isHiragana( char c )
+  {
+    return (c >= '\u3041' && c <= '\u3094') || c == '\u309d' || c == '\u309e';
+  }
+
+  private static boolean isCjkDiacritic( char c )
+  {
+    return (c >= '\u3099' && c <= '\u309c') || c == '\u30fb' || c == '\u30fc';
+  }
+}
@@ -83,14 +83,23 @@ public EmpathyPanel(int appletSize, String artType,
 
 	/**
 	 * Notifies the Synesthetiator about the new text. It should be called from
-	 * the GUI.
+	 * the GUI; the text is analysed on a worker thread, so that the GUI stays
+	 * responsive.
 	 * 
 	 * @param text
 	 *            String which represents the text to be analysed
 	 * @throws Exception
 	 */
 	public void fireSynesthesiator(String text) throws Exception {
-		synesthetiator.synesthetise(text);
+		synesthetiator.synesthetiseAsync(text);
+	}
+
+	/**
+	 * Stops the worker thread of the Synesthetiator. It should be called when
+	 * the panel is discarded; texts fired afterwards are rejected.
+	 */
+	public void close() {
+		synesthetiator.close();
 	}
 
 	/**
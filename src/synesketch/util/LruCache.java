@@ -0,0 +1,287 @@
+package synesketch.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A thread-safe cache which is bounded by the number of entries and by their
+ * total weight, evicting the least recently used entries first.
+ * <p>
+ * So that concurrent callers rarely contend, the entries are spread over
+ * segments by the hash codes of their keys, each with its own lock, its own
+ * share of the bounds and its own order of use. Eviction is therefore only
+ * approximately least recently used across the whole cache, and an entry is
+ * only cached if it fits into the weight share of its segment. Small caches
+ * have fewer segments, down to a single, exactly ordered one.
+ * <p>
+ * The cache counts hits, misses and evictions.
+ *
+ * @param <K>  the key type
+ * @param <V>  the value type
+ */
+public class LruCache<K, V>
+{
+  /**
+   * Computes the weight of a cache entry.
+   *
+   * @param <K>  the key type
+   * @param <V>  the value type
+   */
+  public interface Weigher<K, V>
+  {
+    /**
+     * Returns the weight of an entry; must not be negative.
+     *
+     * @param key  the entry key
+     * @param value  the entry value
+     * @return  the weight
+     */
+    long weigh( K key, V value );
+  }
+
+
+  /** The maximum number of segments. */
+  private static final int MAX_SEGMENTS = 64;
+
+  /** The minimum number of entries per segment. */
+  private static final int MIN_SEGMENT_SIZE = 16;
+
+  private final Segment<K, V>[] segments;
+
+  private final Weigher<? super K, ? super V> weigher;
+
+  private final LongAdder hits = new LongAdder(), misses = new LongAdder(),
+    evictions = new LongAdder();
+
+
+  /**
+   * Class constructor for a cache which is only bounded by the number of
+   * entries.
+   *
+   * @param maxSize  the maximum number of entries
+   * @throws IllegalArgumentException  if <code>maxSize</code> isn't positive
+   */
+  public LruCache( int maxSize )
+  {
+    this(maxSize, Long.MAX_VALUE, null);
+  }
+
+  /**
+   * Class constructor for a cache which is bounded by the number of entries
+   * and their total weight.
+   *
+   * @param maxSize  the maximum number of entries
+   * @param maxWeight  the maximum total weight of all entries
+   * @param weigher  computes the weight of an entry, or <code>null</code> to
+   *   weigh each entry as 1
+   * @throws IllegalArgumentException  if a bound isn't positive
+   */
+  @SuppressWarnings("unchecked")
+  public LruCache( int maxSize, long maxWeight, Weigher<? super K, ? super V> weigher )
+  {
+    if (maxSize <= 0 || maxWeight <= 0)
+      throw new IllegalArgumentException("Cache bounds must be positive");
+    this.weigher = weigher;
+
+    int count = 1;
+    int parallelism = Runtime.getRuntime().availableProcessors() * 2;
+    while (count < MAX_SEGMENTS && count < parallelism &&
+      maxSize / (count * 2) >= MIN_SEGMENT_SIZE)
+    {
+      count *= 2;
+    }
+    segments = new Segment[count];
+    for (int i = 0; i < count; i++) {
+      segments[i] = new Segment<K, V>(share(maxSize, count, i),
+        (maxWeight == Long.MAX_VALUE) ? maxWeight : share(maxWeight, count, i));
+    }
+  }
+
+  /** Splits a bound evenly into shares which add up to it. */
+  private static long share( long bound, int count, int index )
+  {
+    return bound / count + ((index < bound % count) ? 1 : 0);
+  }
+
+  private static int share( int bound, int count, int index )
+  {
+    return (int) share((long) bound, count, index);
+  }
+
+  private Segment<K, V> segmentFor( Object key )
+  {
+    int h = key.hashCode();
+    h ^= h >>> 16;
+    return segments[(h * 0x9E3779B9 >>> 16) & (segments.length - 1)];
+  }
+
+
+  /**
+   * Returns the value cached for a key and marks it as recently used.
+   *
+   * @param key  the key
+   * @return  the cached value or <code>null</code>
+   */
+  public V get( K key )
+  {
+    V value = segmentFor(key).get(key);
+    if (value != null)
+      hits.increment();
+    else
+      misses.increment();
+    return value;
+  }
+
+  /**
+   * Caches a value and evicts the least recently used entries of its segment
+   * until the bounds are met again. Values which are heavier than the weight
+   * share of their segment on their own aren't cached.
+   *
+   * @param key  the key
+   * @param value  the value
+   */
+  public void put( K key, V value )
+  {
+    long w = (weigher != null) ? weigher.weigh(key, value) : 1;
+    int evicted = segmentFor(key).put(key, value, w);
+    if (evicted > 0)
+      evictions.add(evicted);
+  }
+
+  /**
+   * Removes all entries. The counters are kept.
+   */
+  public void clear()
+  {
+    for (Segment<K, V> segment : segments)
+      segment.clear();
+  }
+
+  /**
+   * Returns the number of cached entries.
+   *
+   * @return  the number of entries
+   */
+  public int size()
+  {
+    int value = 0;
+    for (Segment<K, V> segment : segments)
+      value += segment.size();
+    return value;
+  }
+
+  /**
+   * Returns the total weight of the cached entries.
+   *
+   * @return  the total weight
+   */
+  public long getWeight()
+  {
+    long value = 0;
+    for (Segment<K, V> segment : segments)
+      value += segment.getWeight();
+    return value;
+  }
+
+  public long getHitCount()
+  {
+    return hits.sum();
+  }
+
+  public long getMissCount()
+  {
+    return misses.sum();
+  }
+
+  public long getEvictionCount()
+  {
+    return evictions.sum();
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format(
+      "%d entries, weight %d, %d hits, %d misses, %d evictions",
+      size(), getWeight(), getHitCount(), getMissCount(), getEvictionCount());
+  }
+
+
+  /** A part of the cache with its own lock and order of use. */
+  private static final class Segment<K, V>
+  {
+    private final LinkedHashMap<K, Entry<V>> map =
+      new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+
+    private final int maxSize;
+
+    private final long maxWeight;
+
+    private long weight = 0;
+
+    Segment( int maxSize, long maxWeight )
+    {
+      this.maxSize = maxSize;
+      this.maxWeight = maxWeight;
+    }
+
+    synchronized V get( K key )
+    {
+      Entry<V> e = map.get(key);
+      return (e != null) ? e.value : null;
+    }
+
+    /** Returns the number of evicted entries. */
+    synchronized int put( K key, V value, long w )
+    {
+      Entry<V> old = map.remove(key);
+      if (old != null)
+        weight -= old.weight;
+      if (w > maxWeight)
+        return 0;
+
+      map.put(key, new Entry<V>(value, w));
+      weight += w;
+      int evicted = 0;
+      Iterator<Entry<V>> it = map.values().iterator();
+      while (map.size() > maxSize || weight > maxWeight) {
+        weight -= it.next().weight;
+        it.remove();
+        evicted++;
+      }
+      return evicted;
+    }
+
+    synchronized void clear()
+    {
+      map.clear();
+      weight = 0;
+    }
+
+    synchronized int size()
+    {
+      return map.size();
+    }
+
+    synchronized long getWeight()
+    {
+      return weight;
+    }
+  }
+
+
+  private static final class Entry<V>
+  {
+    final V value;
+
+    final long weight;
+
+    Entry( V value, long weight )
+    {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
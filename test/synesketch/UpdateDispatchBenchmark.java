@@ -0,0 +1,114 @@
+package synesketch;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import processing.core.PApplet;
+
+/**
+ * Measures the cost of calling an applet's <code>synesketchUpdate</code>
+ * method through the update handlers {@link Synesthetiator} binds (the
+ * generated handler of a public applet class, the reflective handler of a
+ * non-public one) and through alternatives (a method handle held in a field,
+ * a plain lambda).
+ * <p>
+ * The sketch adds up the text lengths of the states it receives and the sum
+ * is printed, so that the calls can't be eliminated. Run it with the compiled
+ * sources and Processing's core library on the class path, once per
+ * mechanism (<code>generated</code>, <code>reflective</code>,
+ * <code>handle</code> or <code>lambda</code>), so that the call site stays
+ * monomorphic as in a real sketch; the optional second argument is the
+ * number of calls per round.
+ */
+public class UpdateDispatchBenchmark
+{
+	private static final int ROUNDS = 10;
+
+	public static class PublicSketch extends PApplet
+	{
+		private static final long serialVersionUID = 1L;
+
+		long sum;
+
+		public void synesketchUpdate(SynesketchState state)
+		{
+			sum += state.getText().length();
+		}
+	}
+
+	static class PackageSketch extends PublicSketch
+	{
+		private static final long serialVersionUID = 1L;
+	}
+
+	/** Calls a method handle held in a (non-constant) field. */
+	static class HandleUpdateHandler implements UpdateHandler
+	{
+		private final MethodHandle handle;
+
+		HandleUpdateHandler(Object handler) throws Exception
+		{
+			handle = MethodHandles.publicLookup()
+				.findVirtual(handler.getClass(), "synesketchUpdate",
+					MethodType.methodType(void.class, SynesketchState.class))
+				.bindTo(handler)
+				.asType(MethodType.methodType(void.class, SynesketchState.class));
+		}
+
+		@Override
+		public void synesketchUpdate(SynesketchState state) throws Exception
+		{
+			try {
+				handle.invokeExact(state);
+			} catch (Exception | Error ex) {
+				throw ex;
+			} catch (Throwable ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		String mechanism = (args.length > 0) ? args[0] : "generated";
+		int calls = (args.length > 1) ? Integer.parseInt(args[1]) : 20000000;
+		SynesketchState[] states = new SynesketchState[64];
+		for (int i = 0; i < states.length; i++)
+			states[i] = new SynesketchState("text" + "!".repeat(i)) { };
+
+		final PublicSketch sketch;
+		UpdateHandler handler;
+		if (mechanism.equals("generated")) {
+			sketch = new PublicSketch();
+			handler = Synesthetiator.bindUpdateHandler(sketch);
+		} else if (mechanism.equals("reflective")) {
+			sketch = new PackageSketch();
+			handler = Synesthetiator.bindUpdateHandler(sketch);
+		} else if (mechanism.equals("handle")) {
+			sketch = new PublicSketch();
+			handler = new HandleUpdateHandler(sketch);
+		} else if (mechanism.equals("lambda")) {
+			sketch = new PublicSketch();
+			handler = sketch::synesketchUpdate;
+		} else {
+			throw new IllegalArgumentException(mechanism);
+		}
+
+		double best = Double.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			run(handler, states, calls);
+			best = Math.min(best, (double) (System.nanoTime() - start) / calls);
+		}
+		System.out.printf("%-10s %6.2f ns/call (sum %d)%n", mechanism, best,
+			sketch.sum);
+	}
+
+	private static void run(UpdateHandler handler, SynesketchState[] states,
+		int calls) throws Exception
+	{
+		for (int i = 0; i < calls; i++)
+			handler.synesketchUpdate(states[i & (states.length - 1)]);
+	}
+}
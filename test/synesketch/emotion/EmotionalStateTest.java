@@ -0,0 +1,109 @@
+/**
+ * Synesketch
+ * Copyright (C) 2008  Uros Krcadinac
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package synesketch.emotion;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+/**
+ * Checks the ranking of emotions by {@link EmotionalState} against the
+ * rankings of the analyser's former <code>TreeSet</code> of emotions, in
+ * which weights within 0.01 of each other count as equal.
+ */
+public class EmotionalStateTest
+{
+	@Test
+	public void ranksByDecreasingWeight()
+	{
+		assertRanking(Arrays.asList(Emotion.SADNESS, Emotion.FEAR,
+			Emotion.HAPPINESS), Emotion.HAPPINESS, 0.2, Emotion.SADNESS, 0.9,
+			Emotion.FEAR, 0.5);
+	}
+
+	@Test
+	public void ranksNearTiesLikeTheTreeSet()
+	{
+		// fear is more than 0.01 above happiness, but sadness is within 0.01
+		// of both
+		assertRanking(Arrays.asList(Emotion.FEAR, Emotion.HAPPINESS,
+			Emotion.SADNESS), Emotion.HAPPINESS, 0.404, Emotion.SADNESS, 0.412,
+			Emotion.FEAR, 0.420);
+		assertRanking(Arrays.asList(Emotion.HAPPINESS, Emotion.DISGUST,
+			Emotion.SURPRISE), Emotion.HAPPINESS, 0.318, Emotion.DISGUST, 0.30,
+			Emotion.SURPRISE, 0.309);
+	}
+
+	@Test
+	public void ranksTiesInInsertionOrder()
+	{
+		assertRanking(Arrays.asList(Emotion.HAPPINESS, Emotion.SADNESS,
+			Emotion.ANGER), Emotion.ANGER, 0.5, Emotion.SADNESS, 0.5,
+			Emotion.HAPPINESS, 0.5);
+		// anger is added before fear, which is heavier by less than 0.01
+		assertRanking(Arrays.asList(Emotion.ANGER, Emotion.FEAR),
+			Emotion.FEAR, 0.505, Emotion.ANGER, 0.50);
+	}
+
+	@Test
+	public void ranksNeutralLastAmongTies()
+	{
+		assertRanking(Arrays.asList(Emotion.HAPPINESS, Emotion.NEUTRAL),
+			Emotion.NEUTRAL, 0.3, Emotion.HAPPINESS, 0.3);
+		assertRanking(Arrays.asList(Emotion.NEUTRAL, Emotion.HAPPINESS),
+			Emotion.NEUTRAL, 0.9, Emotion.HAPPINESS, 0.3);
+		assertEquals(Emotion.NEUTRAL,
+			new EmotionalState("text").getStrongestEmotion().getType());
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void hasNoStrongestEmotionWithoutWeights()
+	{
+		EmotionalState state = newState();
+		assertEquals(0, state.getFirstStrongestEmotions(3).size());
+		state.getStrongestEmotion();
+	}
+
+
+	private static EmotionalState newState(Object... typesAndWeights)
+	{
+		double[] weights = new double[EmotionalState.EMOTION_TYPE_COUNT];
+		for (int i = 0; i < typesAndWeights.length; i += 2) {
+			weights[1 + (Integer) typesAndWeights[i]] =
+				(Double) typesAndWeights[i + 1];
+		}
+		return new EmotionalState("", weights, null, 0, 0);
+	}
+
+	private static void assertRanking(List<Integer> expected,
+		Object... typesAndWeights)
+	{
+		EmotionalState state = newState(typesAndWeights);
+		List<Integer> actual = new ArrayList<Integer>();
+		for (Emotion e : state.getFirstStrongestEmotions(Integer.MAX_VALUE))
+			actual.add(e.getType());
+		assertEquals(expected, actual);
+		assertEquals((int) expected.get(0), state.getStrongestEmotion().getType());
+	}
+}
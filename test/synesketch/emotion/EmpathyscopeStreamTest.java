@@ -0,0 +1,121 @@
+/**
+ * Synesketch
+ * Copyright (C) 2008  Uros Krcadinac
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package synesketch.emotion;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link Empathyscope#feel(Reader)} analyses a text like
+ * {@link Empathyscope#feel(String)}, however the reader splits it.
+ */
+public class EmpathyscopeStreamTest
+{
+	private static final String[] TEXTS = {
+		"ok.:( bye now",
+		"That was great.:) thanks",
+		"LASHING.;!",
+		"I am so happy! You scared me. Mr. Smith was angry...\nwhat a surprise?!",
+		"I hate it.\"  (really) ... i love it :D. No fear. not sad at all."
+	};
+
+	@Test
+	public void feelsLikeTheWholeTextAtEverySplit() throws IOException
+	{
+		Empathyscope empathyscope = Empathyscope.getInstance();
+		for (String text : TEXTS) {
+			EmotionalState expected = empathyscope.feel(text);
+			for (int split = 0; split <= text.length(); split++) {
+				String message = '"' + text + "\" split at " + split;
+				assertEqualState(message, expected,
+					empathyscope.feel(new SplitReader(text, split)));
+			}
+		}
+	}
+
+	@Test
+	public void feelsLikeTheWholeTextInSingleCharacters() throws IOException
+	{
+		Empathyscope empathyscope = Empathyscope.getInstance();
+		for (String text : TEXTS) {
+			assertEqualState('"' + text + '"', empathyscope.feel(text),
+				empathyscope.feel(new SplitReader(text, 1, 1)));
+		}
+	}
+
+
+	private static void assertEqualState(String message,
+		EmotionalState expected, EmotionalState actual)
+	{
+		assertEquals(message, expected.getValence(), actual.getValence());
+		assertEquals(message, expected.getGeneralWeight(),
+			actual.getGeneralWeight(), 0);
+		for (int type = Emotion.HAPPINESS; type <= Emotion.SURPRISE; type++) {
+			assertEquals(message, expected.getWeight(type),
+				actual.getWeight(type), 0);
+		}
+	}
+
+
+	/**
+	 * Reads a text in chunks: at most <code>first</code> characters, then at
+	 * most <code>rest</code> characters per call.
+	 */
+	private static final class SplitReader extends Reader
+	{
+		private final String text;
+
+		private final int first, rest;
+
+		private int pos = 0;
+
+		SplitReader(String text, int first)
+		{
+			this(text, first, Integer.MAX_VALUE);
+		}
+
+		SplitReader(String text, int first, int rest)
+		{
+			this.text = text;
+			this.first = first;
+			this.rest = rest;
+		}
+
+		@Override
+		public int read(char[] buf, int off, int len)
+		{
+			if (pos == text.length())
+				return -1;
+			int n = Math.min(Math.min(len, text.length() - pos),
+				(pos == 0 && first > 0) ? first : rest);
+			text.getChars(pos, pos + n, buf, off);
+			pos += n;
+			return n;
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	}
+}